@@ -0,0 +1,337 @@
+package com.library.service;
+
+import com.library.util.Deadline;
+import com.library.util.LibraryConfig;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of LibraryService, so a burst of requests (e.g. kiosks at
+ * term start) waits or is turned away before it reaches the connection pool. Each
+ * operation has a token bucket per client (admission.&lt;op&gt;.rate requests per second,
+ * admission.&lt;op&gt;.burst) and a cap on calls running at once
+ * (admission.&lt;op&gt;.max.concurrent). Callers over the cap queue for up to
+ * admission.&lt;op&gt;.queue.timeout.ms; once admission.&lt;op&gt;.max.queued are already
+ * waiting, further callers are rejected straight away. Limits are read from
+ * {@link LibraryConfig} when used, so they follow config reloads.
+ *
+ * Each call also gets an overall time budget, admission.&lt;op&gt;.deadline.ms, covering
+ * its queue wait and all of its queries (see {@link Deadline}).
+ */
+public class AdmissionController {
+
+    public enum Operation {
+        BORROW(8, 10000), RETURN(8, 10000), HOLD(4, 5000), SEARCH(6, 5000), BROWSE(4, 10000), HISTORY(4, 15000);
+
+        private final int defaultConcurrency;
+        private final long defaultDeadlineMillis;
+
+        Operation(int defaultConcurrency, long defaultDeadlineMillis) {
+            this.defaultConcurrency = defaultConcurrency;
+            this.defaultDeadlineMillis = defaultDeadlineMillis;
+        }
+
+        String key(String setting) {
+            return "admission." + name().toLowerCase() + "." + setting;
+        }
+    }
+
+    // Client for calls that don't name one, i.e. the console
+    public static final String DEFAULT_CLIENT = "console";
+
+    private static final ThreadLocal<String> CLIENT = ThreadLocal.withInitial(() -> DEFAULT_CLIENT);
+
+    // Buckets idle this long are full again and can be dropped once there are many
+    private static final int MAX_BUCKETS = 10000;
+    private static final long BUCKET_IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final LibraryConfig config = LibraryConfig.get();
+    private final Map<Operation, Gate> gates = new EnumMap<>(Operation.class);
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public AdmissionController() {
+        for (Operation operation : Operation.values()) {
+            gates.put(operation, new Gate(operation));
+        }
+    }
+
+    // Names the client (e.g. a kiosk id) that calls on this thread are rate limited as
+    public static void setClient(String clientId) {
+        CLIENT.set(clientId != null ? clientId : DEFAULT_CLIENT);
+    }
+
+    public static void clearClient() {
+        CLIENT.remove();
+    }
+
+    /**
+     * Admits a call, waiting for a free slot if needed. Returns null, after telling the
+     * caller why, if the call is rejected; otherwise the permit must be closed when the
+     * call finishes.
+     */
+    public Permit admit(Operation operation) {
+        Gate gate = gates.get(operation);
+        String client = CLIENT.get();
+
+        if (!takeToken(operation, client)) {
+            gate.rateLimited.increment();
+            System.err.println("Too many " + operation.name().toLowerCase() + " requests from " + client
+                    + "; please try again shortly.");
+            return null;
+        }
+
+        switch (gate.enter()) {
+            case ADMITTED:
+                return new Permit(gate);
+            case SHED:
+                System.err.println("The library system is busy; please try again shortly.");
+                return null;
+            default:
+                System.err.println("Timed out waiting for the library system; please try again.");
+                return null;
+        }
+    }
+
+    // Runs the work within the operation's time budget if admitted, otherwise returns the rejected value
+    public <T> T call(Operation operation, T rejected, Supplier<T> work) {
+        Deadline.Scope scope = Deadline.start(
+                config.getLong(operation.key("deadline.ms"), operation.defaultDeadlineMillis));
+        try (Permit permit = admit(operation)) {
+            return permit != null ? work.get() : rejected;
+        } finally {
+            scope.close();
+        }
+    }
+
+    public List<Stats> getStats() {
+        List<Stats> stats = new ArrayList<>();
+        for (Gate gate : gates.values()) {
+            stats.add(gate.snapshot());
+        }
+        return stats;
+    }
+
+    private boolean takeToken(Operation operation, String client) {
+        long rate = config.getLong(operation.key("rate"), 0);
+        if (rate <= 0) {
+            return true;
+        }
+        long burst = Math.max(1, config.getLong(operation.key("burst"), rate));
+
+        if (buckets.size() > MAX_BUCKETS) {
+            long now = System.nanoTime();
+            buckets.values().removeIf(bucket -> bucket.idleNanos(now) > BUCKET_IDLE_NANOS);
+        }
+        return buckets.computeIfAbsent(client + "/" + operation, k -> new TokenBucket(burst)).tryTake(rate, burst);
+    }
+
+    public static final class Permit implements AutoCloseable {
+        private final Gate gate;
+        private boolean closed;
+
+        private Permit(Gate gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                gate.exit();
+            }
+        }
+    }
+
+    // Counters since startup, plus the calls running and queued right now
+    public static final class Stats {
+        private final Operation operation;
+        private final long admitted;
+        private final long queued;
+        private final long rateLimited;
+        private final long shed;
+        private final long timedOut;
+        private final int running;
+        private final int waiting;
+        private final long maxQueueWaitMillis;
+
+        private Stats(Operation operation, long admitted, long queued, long rateLimited, long shed, long timedOut,
+                int running, int waiting, long maxQueueWaitMillis) {
+            this.operation = operation;
+            this.admitted = admitted;
+            this.queued = queued;
+            this.rateLimited = rateLimited;
+            this.shed = shed;
+            this.timedOut = timedOut;
+            this.running = running;
+            this.waiting = waiting;
+            this.maxQueueWaitMillis = maxQueueWaitMillis;
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public long getAdmitted() {
+            return admitted;
+        }
+
+        // Admitted or timed-out calls that had to wait for a slot
+        public long getQueued() {
+            return queued;
+        }
+
+        public long getRateLimited() {
+            return rateLimited;
+        }
+
+        // Rejected without waiting because the queue was full
+        public long getShed() {
+            return shed;
+        }
+
+        public long getTimedOut() {
+            return timedOut;
+        }
+
+        public long getRejected() {
+            return rateLimited + shed + timedOut;
+        }
+
+        public int getRunning() {
+            return running;
+        }
+
+        public int getWaiting() {
+            return waiting;
+        }
+
+        public long getMaxQueueWaitMillis() {
+            return maxQueueWaitMillis;
+        }
+    }
+
+    private enum Outcome {
+        ADMITTED, SHED, TIMED_OUT
+    }
+
+    // Concurrency cap and wait queue for one operation
+    private final class Gate {
+        private final Operation operation;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition freed = lock.newCondition();
+        private int running;
+        private int waiting;
+
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder queued = new LongAdder();
+        private final LongAdder rateLimited = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+        Gate(Operation operation) {
+            this.operation = operation;
+        }
+
+        Outcome enter() {
+            int maxConcurrent = config.getInt(operation.key("max.concurrent"), operation.defaultConcurrency);
+            lock.lock();
+            try {
+                if (running < maxConcurrent) {
+                    running++;
+                    admitted.increment();
+                    return Outcome.ADMITTED;
+                }
+                if (waiting >= config.getInt(operation.key("max.queued"), 4 * operation.defaultConcurrency)) {
+                    shed.increment();
+                    return Outcome.SHED;
+                }
+
+                waiting++;
+                queued.increment();
+                long start = System.nanoTime();
+                long remaining = TimeUnit.MILLISECONDS.toNanos(Math.min(Deadline.remainingMillis(),
+                        config.getLong(operation.key("queue.timeout.ms"), 2000)));
+                try {
+                    while (running >= maxConcurrent) {
+                        if (remaining <= 0) {
+                            timedOut.increment();
+                            return Outcome.TIMED_OUT;
+                        }
+                        remaining = freed.awaitNanos(remaining);
+                    }
+                    running++;
+                    admitted.increment();
+                    maxWaitNanos.accumulate(System.nanoTime() - start);
+                    return Outcome.ADMITTED;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    timedOut.increment();
+                    return Outcome.TIMED_OUT;
+                } finally {
+                    waiting--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void exit() {
+            lock.lock();
+            try {
+                running--;
+                freed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Stats snapshot() {
+            int runningNow;
+            int waitingNow;
+            lock.lock();
+            try {
+                runningNow = running;
+                waitingNow = waiting;
+            } finally {
+                lock.unlock();
+            }
+            return new Stats(operation, admitted.sum(), queued.sum(), rateLimited.sum(), shed.sum(), timedOut.sum(),
+                    runningNow, waitingNow, TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        }
+    }
+
+    private static final class TokenBucket {
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(long burst) {
+            this.tokens = burst;
+        }
+
+        synchronized boolean tryTake(long ratePerSecond, long burst) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) * ratePerSecond / 1e9);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized long idleNanos(long now) {
+            return now - refilledAt;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.library.audit;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * On-disk layout of the audit log. Each segment is a {@code .log} file holding a small
+ * header followed by fixed-size records, plus an {@code .idx} sidecar with one summary
+ * per full block of records: the time, user and book ranges of that block. Readers use
+ * the summaries to skip blocks that cannot match; the tail after the last summary is
+ * always scanned.
+ */
+final class AuditFormat {
+
+    static final int MAGIC = 0x4C424155; // "LBAU"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+
+    static final int BLOCK_RECORDS = 1024;
+    static final int SEGMENT_BLOCKS = 1024;
+
+    static final String LOG_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".idx";
+
+    private AuditFormat() {
+    }
+
+    static File logFile(File dir, long segment) {
+        return new File(dir, String.format("audit-%08d%s", segment, LOG_SUFFIX));
+    }
+
+    static File indexFile(File dir, long segment) {
+        return new File(dir, String.format("audit-%08d%s", segment, INDEX_SUFFIX));
+    }
+
+    // Segment numbers present in the directory, oldest first
+    static List<Long> segments(File dir) {
+        List<Long> segments = new ArrayList<>();
+        File[] files = dir.listFiles((d, name) -> name.startsWith("audit-") && name.endsWith(LOG_SUFFIX));
+        if (files == null) {
+            return segments;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                segments.add(Long.parseLong(name.substring("audit-".length(), name.length() - LOG_SUFFIX.length())));
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    static long blockOffset(int block) {
+        return HEADER_SIZE + (long) block * BLOCK_RECORDS * AuditRecord.SIZE;
+    }
+
+    /** Ranges covered by one block of records; the sparse index is a run of these. */
+    static final class BlockSummary {
+        static final int SIZE = 8 + 8 + 4 + 4 + 4 + 4;
+
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        int minUser = Integer.MAX_VALUE;
+        int maxUser = Integer.MIN_VALUE;
+        int minBook = Integer.MAX_VALUE;
+        int maxBook = Integer.MIN_VALUE;
+
+        void add(AuditRecord record) {
+            minTime = Math.min(minTime, record.getTimestamp());
+            maxTime = Math.max(maxTime, record.getTimestamp());
+            minUser = Math.min(minUser, record.getUserId());
+            maxUser = Math.max(maxUser, record.getUserId());
+            minBook = Math.min(minBook, record.getBookId());
+            maxBook = Math.max(maxBook, record.getBookId());
+        }
+
+        boolean mayContain(Integer userId, Integer bookId, long from, long to) {
+            return maxTime >= from && minTime < to
+                    && (userId == null || (userId >= minUser && userId <= maxUser))
+                    && (bookId == null || (bookId >= minBook && bookId <= maxBook));
+        }
+
+        void write(ByteBuffer buffer) {
+            buffer.putLong(minTime).putLong(maxTime)
+                    .putInt(minUser).putInt(maxUser)
+                    .putInt(minBook).putInt(maxBook);
+        }
+
+        static BlockSummary read(ByteBuffer buffer) {
+            BlockSummary summary = new BlockSummary();
+            summary.minTime = buffer.getLong();
+            summary.maxTime = buffer.getLong();
+            summary.minUser = buffer.getInt();
+            summary.maxUser = buffer.getInt();
+            summary.minBook = buffer.getInt();
+            summary.maxBook = buffer.getInt();
+            return summary;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.library.audit;
+
+import com.library.events.ChangeEvent;
+import com.library.events.ChangeListener;
+import com.library.model.Transaction;
+import com.library.model.User;
+import com.library.util.LibraryConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only audit trail of borrows, returns, suspensions and activations, fed from
+ * the DAO change stream. Callers only enqueue; a single writer thread drains the queue
+ * in batches, appends them to the current segment and fsyncs once per batch, so the
+ * cost of durability is shared by everything that arrived while the previous batch was
+ * being written. Every run starts a new segment, so a record torn by a crash is only
+ * ever at the end of an older segment, where readers ignore it.
+ */
+public class AuditLog implements ChangeListener {
+
+    public static final String DEFAULT_AUDIT_DIR = "audit-log";
+
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final int MAX_BATCH = 4096;
+    private static final long POLL_MILLIS = 100;
+    private static final long CLOSE_WAIT_MILLIS = 10_000;
+
+    private final File dir;
+    private final BlockingQueue<AuditRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private volatile boolean running;
+    private Thread writer;
+
+    public AuditLog() {
+        this(new File(LibraryConfig.get().getString("audit.dir", DEFAULT_AUDIT_DIR)));
+    }
+
+    public AuditLog(File dir) {
+        this.dir = dir;
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            System.err.println("Cannot create audit log directory " + dir.getPath());
+            return;
+        }
+        running = true;
+        writer = new Thread(new Writer(), "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Stops accepting records and waits for the queued ones to reach disk
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(CLOSE_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void onChange(ChangeEvent<?> event) {
+        AuditRecord record = toRecord(event);
+        if (record != null) {
+            append(record);
+        }
+    }
+
+    // Blocks only when the writer is a whole queue behind
+    public void append(AuditRecord record) {
+        if (!running) {
+            System.err.println("Audit log is not running, dropped: " + record);
+            return;
+        }
+        try {
+            queue.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted, dropped audit record: " + record);
+        }
+    }
+
+    // Only status transitions are audited; other updates map to nothing
+    private static AuditRecord toRecord(ChangeEvent<?> event) {
+        if (event.isFor(Transaction.class)) {
+            Transaction before = (Transaction) event.getBefore();
+            Transaction after = (Transaction) event.getAfter();
+            if (after == null) {
+                return null;
+            }
+            if (event.getOperation() == ChangeEvent.Operation.INSERT) {
+                return new AuditRecord(event.getTimestamp(), AuditRecord.Action.BORROW, after.getUserId(),
+                        after.getBookId(), after.getTransactionId());
+            }
+            if (event.getOperation() == ChangeEvent.Operation.UPDATE
+                    && after.getStatus() == Transaction.TransactionStatus.RETURNED
+                    && (before == null || before.getStatus() != Transaction.TransactionStatus.RETURNED)) {
+                return new AuditRecord(event.getTimestamp(), AuditRecord.Action.RETURN, after.getUserId(),
+                        after.getBookId(), after.getTransactionId());
+            }
+        } else if (event.isFor(User.class) && event.getOperation() == ChangeEvent.Operation.UPDATE) {
+            User before = (User) event.getBefore();
+            User after = (User) event.getAfter();
+            if (before == null || after == null || before.getStatus() == after.getStatus()) {
+                return null;
+            }
+            if (after.getStatus() == User.Status.SUSPENDED) {
+                return new AuditRecord(event.getTimestamp(), AuditRecord.Action.SUSPEND, after.getUserId(),
+                        AuditRecord.NONE, AuditRecord.NONE);
+            }
+            if (after.getStatus() == User.Status.ACTIVE) {
+                return new AuditRecord(event.getTimestamp(), AuditRecord.Action.ACTIVATE, after.getUserId(),
+                        AuditRecord.NONE, AuditRecord.NONE);
+            }
+        }
+        return null;
+    }
+
+    private class Writer implements Runnable {
+        private final List<AuditRecord> batch = new ArrayList<>(MAX_BATCH);
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_BATCH * AuditRecord.SIZE);
+        private final List<AuditFormat.BlockSummary> completedBlocks = new ArrayList<>();
+
+        private long segment = -1;
+        private FileChannel log;
+        private FileChannel index;
+        private int recordsInSegment;
+        private AuditFormat.BlockSummary block;
+
+        @Override
+        public void run() {
+            try {
+                while (running || !queue.isEmpty()) {
+                    AuditRecord first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    try {
+                        writeBatch();
+                    } catch (IOException e) {
+                        System.err.println("Error writing audit log, lost " + batch.size() + " record(s): "
+                                + e.getMessage());
+                        e.printStackTrace();
+                        closeSegment();
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                closeSegment();
+            }
+        }
+
+        private void writeBatch() throws IOException {
+            if (log == null) {
+                openSegment();
+            }
+            for (AuditRecord record : batch) {
+                if (recordsInSegment == AuditFormat.SEGMENT_BLOCKS * AuditFormat.BLOCK_RECORDS) {
+                    flush();
+                    closeSegment();
+                    openSegment();
+                }
+                record.write(buffer);
+                block.add(record);
+                if (++recordsInSegment % AuditFormat.BLOCK_RECORDS == 0) {
+                    completedBlocks.add(block);
+                    block = new AuditFormat.BlockSummary();
+                }
+            }
+            flush();
+        }
+
+        // Records are forced to disk before the index entries that point at them are written
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            buffer.clear();
+            log.force(false);
+
+            if (!completedBlocks.isEmpty()) {
+                ByteBuffer entries = ByteBuffer.allocate(completedBlocks.size() * AuditFormat.BlockSummary.SIZE);
+                for (AuditFormat.BlockSummary summary : completedBlocks) {
+                    summary.write(entries);
+                }
+                entries.flip();
+                while (entries.hasRemaining()) {
+                    index.write(entries);
+                }
+                completedBlocks.clear();
+            }
+        }
+
+        private void openSegment() throws IOException {
+            if (segment < 0) {
+                List<Long> existing = AuditFormat.segments(dir);
+                segment = existing.isEmpty() ? 0 : existing.get(existing.size() - 1);
+            }
+            segment++;
+            log = FileChannel.open(AuditFormat.logFile(dir, segment).toPath(),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            index = FileChannel.open(AuditFormat.indexFile(dir, segment).toPath(),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(AuditFormat.HEADER_SIZE);
+            header.putInt(AuditFormat.MAGIC).putInt(AuditFormat.VERSION).flip();
+            while (header.hasRemaining()) {
+                log.write(header);
+            }
+            recordsInSegment = 0;
+            block = new AuditFormat.BlockSummary();
+        }
+
+        private void closeSegment() {
+            buffer.clear();
+            completedBlocks.clear();
+            for (FileChannel channel : new FileChannel[] { log, index }) {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        System.err.println("Error closing audit segment: " + e.getMessage());
+                    }
+                }
+            }
+            log = null;
+            index = null;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.library.audit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Searches the audit log. Every segment's sparse index is consulted first, so only
+ * blocks whose time, user and book ranges overlap the filter are read from disk. Safe
+ * to use while the log is being written: it only ever reads whole records.
+ */
+public class AuditLogReader {
+
+    private final File dir;
+
+    public AuditLogReader(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Records matching all given filters, oldest first. Null filters match everything;
+     * the time range includes {@code from} and excludes {@code to}.
+     */
+    public List<AuditRecord> find(Integer userId, Integer bookId, LocalDateTime from, LocalDateTime to) {
+        long fromMillis = from != null ? from.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : Long.MIN_VALUE;
+        long toMillis = to != null ? to.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : Long.MAX_VALUE;
+
+        List<AuditRecord> results = new ArrayList<>();
+        for (long segment : AuditFormat.segments(dir)) {
+            try {
+                scanSegment(segment, userId, bookId, fromMillis, toMillis, results);
+            } catch (IOException e) {
+                System.err.println("Error reading audit segment " + segment + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        results.sort(Comparator.comparingLong(AuditRecord::getTimestamp));
+        return results;
+    }
+
+    private void scanSegment(long segment, Integer userId, Integer bookId, long from, long to,
+            List<AuditRecord> results) throws IOException {
+        try (FileChannel log = FileChannel.open(AuditFormat.logFile(dir, segment).toPath(), StandardOpenOption.READ)) {
+            if (log.size() < AuditFormat.HEADER_SIZE) {
+                return;
+            }
+            ByteBuffer header = ByteBuffer.allocate(AuditFormat.HEADER_SIZE);
+            readFully(log, header, 0);
+            if (header.getInt() != AuditFormat.MAGIC || header.getInt() != AuditFormat.VERSION) {
+                throw new IOException("Not an audit segment");
+            }
+            long records = (log.size() - AuditFormat.HEADER_SIZE) / AuditRecord.SIZE;
+            int blocks = (int) ((records + AuditFormat.BLOCK_RECORDS - 1) / AuditFormat.BLOCK_RECORDS);
+            List<AuditFormat.BlockSummary> summaries = readIndex(segment);
+
+            ByteBuffer buffer = ByteBuffer.allocate(AuditFormat.BLOCK_RECORDS * AuditRecord.SIZE);
+            for (int block = 0; block < blocks; block++) {
+                // Blocks past the end of the index (the open one, or after a crash) are always scanned
+                if (block < summaries.size() && !summaries.get(block).mayContain(userId, bookId, from, to)) {
+                    continue;
+                }
+                long first = (long) block * AuditFormat.BLOCK_RECORDS;
+                int count = (int) Math.min(AuditFormat.BLOCK_RECORDS, records - first);
+                buffer.clear().limit(count * AuditRecord.SIZE);
+                readFully(log, buffer, AuditFormat.blockOffset(block));
+
+                for (int i = 0; i < count; i++) {
+                    AuditRecord record = AuditRecord.read(buffer);
+                    if (record.getTimestamp() >= from && record.getTimestamp() < to
+                            && (userId == null || record.getUserId() == userId)
+                            && (bookId == null || record.getBookId() == bookId)) {
+                        results.add(record);
+                    }
+                }
+            }
+        }
+    }
+
+    private List<AuditFormat.BlockSummary> readIndex(long segment) throws IOException {
+        List<AuditFormat.BlockSummary> summaries = new ArrayList<>();
+        File indexFile = AuditFormat.indexFile(dir, segment);
+        if (!indexFile.isFile()) {
+            return summaries;
+        }
+        ByteBuffer entries = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+        while (entries.remaining() >= AuditFormat.BlockSummary.SIZE) {
+            summaries.add(AuditFormat.BlockSummary.read(entries));
+        }
+        return summaries;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of audit segment");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+}
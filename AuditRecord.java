@@ -0,0 +1,86 @@
+package com.library.audit;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * One circulation action in the audit log. Records are fixed-size so segments can be
+ * read by offset without any framing.
+ */
+public final class AuditRecord {
+
+    public enum Action {
+        BORROW, RETURN, SUSPEND, ACTIVATE
+    }
+
+    // timestamp, action, user id, book id, transaction id
+    static final int SIZE = 8 + 1 + 4 + 4 + 4;
+
+    static final int NONE = 0;
+
+    private static final Action[] ACTIONS = Action.values();
+
+    private final long timestamp;
+    private final Action action;
+    private final int userId;
+    private final int bookId;
+    private final int transactionId;
+
+    public AuditRecord(long timestamp, Action action, int userId, int bookId, int transactionId) {
+        this.timestamp = timestamp;
+        this.action = action;
+        this.userId = userId;
+        this.bookId = bookId;
+        this.transactionId = transactionId;
+    }
+
+    static AuditRecord read(ByteBuffer buffer) {
+        long timestamp = buffer.getLong();
+        Action action = ACTIONS[buffer.get()];
+        return new AuditRecord(timestamp, action, buffer.getInt(), buffer.getInt(), buffer.getInt());
+    }
+
+    void write(ByteBuffer buffer) {
+        buffer.putLong(timestamp);
+        buffer.put((byte) action.ordinal());
+        buffer.putInt(userId);
+        buffer.putInt(bookId);
+        buffer.putInt(transactionId);
+    }
+
+    // Epoch milliseconds
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public LocalDateTime getTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    // 0 for user actions
+    public int getBookId() {
+        return bookId;
+    }
+
+    // 0 for user actions
+    public int getTransactionId() {
+        return transactionId;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %-8s User=%d Book=%s Transaction=%s", getTime().withNano(0), action, userId,
+                bookId != NONE ? String.valueOf(bookId) : "-",
+                transactionId != NONE ? String.valueOf(transactionId) : "-");
+    }
+}
@@ -1,9 +1,15 @@
 package com.library.model;
 
 import java.time.LocalDateTime;
+import java.util.Objects;
 
 public class Book {
 
+    // Columns an UPDATE can write; setters record which of them changed since load
+    public enum Field {
+        TITLE, AUTHOR, ISBN, PUBLISHER, PUBLICATION_YEAR, CATEGORY
+    }
+
     private int bookId;
     private String title;
     private String author;
@@ -16,6 +22,14 @@ public class Book {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    // Bumped on every edit; updates only apply if it is unchanged since the row was read
+    private int version;
+
+    // Branch that owns the book; decides which database it is stored in (1 = main branch)
+    private int branchId = 1;
+
+    private int dirtyFields;
+
     // Constructors
     public Book() {
     }
@@ -32,6 +46,23 @@ public class Book {
         this.availableCopies = availableCopies;
     }
 
+    public Book(Book other) {
+        this.bookId = other.bookId;
+        this.title = other.title;
+        this.author = other.author;
+        this.isbn = other.isbn;
+        this.publisher = other.publisher;
+        this.publicationYear = other.publicationYear;
+        this.category = other.category;
+        this.totalCopies = other.totalCopies;
+        this.availableCopies = other.availableCopies;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.version = other.version;
+        this.branchId = other.branchId;
+        this.dirtyFields = other.dirtyFields;
+    }
+
     // Getters and Setters
     public int getBookId() {
         return bookId;
@@ -46,6 +77,7 @@ public class Book {
     }
 
     public void setTitle(String title) {
+        markDirty(Field.TITLE, this.title, title);
         this.title = title;
     }
 
@@ -54,6 +86,7 @@ public class Book {
     }
 
     public void setAuthor(String author) {
+        markDirty(Field.AUTHOR, this.author, author);
         this.author = author;
     }
 
@@ -62,6 +95,7 @@ public class Book {
     }
 
     public void setIsbn(String isbn) {
+        markDirty(Field.ISBN, this.isbn, isbn);
         this.isbn = isbn;
     }
 
@@ -70,6 +104,7 @@ public class Book {
     }
 
     public void setPublisher(String publisher) {
+        markDirty(Field.PUBLISHER, this.publisher, publisher);
         this.publisher = publisher;
     }
 
@@ -78,6 +113,7 @@ public class Book {
     }
 
     public void setPublicationYear(int publicationYear) {
+        markDirty(Field.PUBLICATION_YEAR, this.publicationYear, publicationYear);
         this.publicationYear = publicationYear;
     }
 
@@ -86,6 +122,7 @@ public class Book {
     }
 
     public void setCategory(String category) {
+        markDirty(Field.CATEGORY, this.category, category);
         this.category = category;
     }
 
@@ -121,6 +158,44 @@ public class Book {
         this.updatedAt = updatedAt;
     }
 
+    public int getBranchId() {
+        return branchId;
+    }
+
+    public void setBranchId(int branchId) {
+        this.branchId = branchId;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    // ==================== Dirty tracking ====================
+
+    // Bitmask of Field ordinals
+    public int getDirtyFields() {
+        return dirtyFields;
+    }
+
+    public boolean isDirty(Field field) {
+        return (dirtyFields & (1 << field.ordinal())) != 0;
+    }
+
+    // Called once the current values match the database row
+    public void clearDirty() {
+        dirtyFields = 0;
+    }
+
+    private void markDirty(Field field, Object oldValue, Object newValue) {
+        if (!Objects.equals(oldValue, newValue)) {
+            dirtyFields |= 1 << field.ordinal();
+        }
+    }
+
     @Override
     public String toString() {
         return String.format("Book[ID=%d, Title='%s', Author='%s', ISBN='%s', Category='%s', Available=%d/%d]",
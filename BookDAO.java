@@ -1,17 +1,52 @@
 package com.library.dao;
 
+import com.library.events.ChangeEvent;
+import com.library.events.ChangeEventBus;
 import com.library.model.Book;
+import com.library.util.ColumnIndex;
 import com.library.util.DatabaseConnection;
+import com.library.util.ResilientExecutor;
+import com.library.util.ShardRouter;
+import com.library.util.SqlUtils;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BookDAO {
 
+    private final ChangeEventBus events = ChangeEventBus.getInstance();
+    private final ResilientExecutor resilience = ResilientExecutor.get();
+
+    // Column of each Book.Field, by ordinal
+    private static final String[] UPDATE_COLUMNS = {
+            "title", "author", "isbn", "publisher", "publication_year", "category" };
+
+    // Same order as ORDER BY title, book_id under the default case-insensitive collation
+    private static final Comparator<Book> TITLE_ORDER = Comparator
+            .comparing(Book::getTitle, String.CASE_INSENSITIVE_ORDER)
+            .thenComparingInt(Book::getBookId);
+
+    // UPDATE statement per combination of dirty fields, built on first use
+    private static final ConcurrentHashMap<Integer, String> UPDATE_SQL = new ConcurrentHashMap<>();
+
+    // Columns read by extractBookFromResultSet, named after their labels
+    private enum Column {
+        BOOK_ID, TITLE, AUTHOR, ISBN, PUBLISHER, PUBLICATION_YEAR, CATEGORY, TOTAL_COPIES, AVAILABLE_COPIES,
+        CREATED_AT, UPDATED_AT, VERSION, BRANCH_ID
+    }
+
+    private static final ColumnIndex<Column> COLUMNS = new ColumnIndex<>(Column.class);
+
     public boolean addBook(Book book) {
         String sql = "INSERT INTO books (title, author, isbn, publisher, publication_year, " +
-                "category, total_copies, available_copies) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+                "category, total_copies, available_copies, branch_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
         try (Connection conn = DatabaseConnection.getConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -24,6 +59,7 @@ public class BookDAO {
             pstmt.setString(6, book.getCategory());
             pstmt.setInt(7, book.getTotalCopies());
             pstmt.setInt(8, book.getAvailableCopies());
+            pstmt.setInt(9, book.getBranchId());
 
             int affectedRows = pstmt.executeUpdate();
 
@@ -31,9 +67,11 @@ public class BookDAO {
                 try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         book.setBookId(generatedKeys.getInt(1));
+                        book.clearDirty();
                     }
                 }
                 System.out.println("Book added successfully: " + book.getTitle());
+                events.publish(ChangeEvent.inserted(Book.class, book.getBookId(), new Book(book)));
                 return true;
             }
         } catch (SQLException e) {
@@ -43,23 +81,20 @@ public class BookDAO {
         return false;
     }
 
+    // Null if there is no such book; throws DataAccessException if the lookup itself fails
     public Book getBookById(int bookId) {
         String sql = "SELECT * FROM books WHERE book_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        return resilience.execute("load book " + bookId, () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                    PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setInt(1, bookId);
-            ResultSet rs = pstmt.executeQuery();
+                pstmt.setInt(1, bookId);
+                ResultSet rs = pstmt.executeQuery();
 
-            if (rs.next()) {
-                return extractBookFromResultSet(rs);
+                return rs.next() ? extractBookFromResultSet(rs) : null;
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving book: " + e.getMessage());
-            e.printStackTrace();
-        }
-        return null;
+        });
     }
 
     public Book getBookByIsbn(String isbn) {
@@ -85,7 +120,7 @@ public class BookDAO {
         List<Book> books = new ArrayList<>();
         String sql = "SELECT * FROM books ORDER BY title";
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
                 Statement stmt = conn.createStatement();
                 ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -99,31 +134,34 @@ public class BookDAO {
         return books;
     }
 
+    /**
+     * Searches the home database and every branch database in parallel and merges the
+     * title-ordered results. Ids are only unique within a database: books of a branch with
+     * its own database (see ShardRouter#hasOwnDatabase) cannot be looked up by id here.
+     */
     public List<Book> searchBooksByTitle(String title) {
-        List<Book> books = new ArrayList<>();
-        String sql = "SELECT * FROM books WHERE title LIKE ? ORDER BY title";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        String sql = "SELECT * FROM books WHERE title LIKE ? ORDER BY title, book_id";
 
-            pstmt.setString(1, "%" + title + "%");
-            ResultSet rs = pstmt.executeQuery();
+        List<List<Book>> perShard = ShardRouter.get().scatter(conn -> {
+            List<Book> books = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, "%" + title + "%");
+                ResultSet rs = pstmt.executeQuery();
 
-            while (rs.next()) {
-                books.add(extractBookFromResultSet(rs));
+                while (rs.next()) {
+                    books.add(extractBookFromResultSet(rs));
+                }
             }
-        } catch (SQLException e) {
-            System.err.println("Error searching books: " + e.getMessage());
-            e.printStackTrace();
-        }
-        return books;
+            return books;
+        });
+        return ShardRouter.mergeSorted(perShard, TITLE_ORDER);
     }
 
     public List<Book> searchBooksByAuthor(String author) {
         List<Book> books = new ArrayList<>();
         String sql = "SELECT * FROM books WHERE author LIKE ? ORDER BY title";
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, "%" + author + "%");
@@ -143,7 +181,7 @@ public class BookDAO {
         List<Book> books = new ArrayList<>();
         String sql = "SELECT * FROM books WHERE category = ? ORDER BY title";
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, category);
@@ -159,32 +197,102 @@ public class BookDAO {
         return books;
     }
 
-    public boolean updateBook(Book book) {
-        String sql = "UPDATE books SET title = ?, author = ?, isbn = ?, publisher = ?, " +
-                "publication_year = ?, category = ?, total_copies = ?, available_copies = ? " +
-                "WHERE book_id = ?";
+    /**
+     * One page of books with copies on the shelf, ordered by (title, book_id). Pass the
+     * last book of the previous page as {@code after} (null for the first page) so each
+     * page is an index range scan rather than an OFFSET over everything before it.
+     */
+    public List<Book> getAvailableBooks(String category, Book after, int limit) {
+        List<Book> books = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM books WHERE available_copies > 0");
+        if (category != null) {
+            sql.append(" AND category = ?");
+        }
+        if (after != null) {
+            sql.append(" AND (title > ? OR (title = ? AND book_id > ?))");
+        }
+        sql.append(" ORDER BY title, book_id LIMIT ?");
 
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
 
-            pstmt.setString(1, book.getTitle());
-            pstmt.setString(2, book.getAuthor());
-            pstmt.setString(3, book.getIsbn());
-            pstmt.setString(4, book.getPublisher());
-            pstmt.setInt(5, book.getPublicationYear());
-            pstmt.setString(6, book.getCategory());
-            pstmt.setInt(7, book.getTotalCopies());
-            pstmt.setInt(8, book.getAvailableCopies());
-            pstmt.setInt(9, book.getBookId());
+            int index = 1;
+            if (category != null) {
+                pstmt.setString(index++, category);
+            }
+            if (after != null) {
+                pstmt.setString(index++, after.getTitle());
+                pstmt.setString(index++, after.getTitle());
+                pstmt.setInt(index++, after.getBookId());
+            }
+            pstmt.setInt(index, limit);
+            ResultSet rs = pstmt.executeQuery();
 
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                System.out.println("Book updated successfully: " + book.getTitle());
-                return true;
+            while (rs.next()) {
+                books.add(extractBookFromResultSet(rs));
             }
         } catch (SQLException e) {
+            System.err.println("Error retrieving available books: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return books;
+    }
+
+    /**
+     * Saves the catalogue details of a book read earlier, writing only the fields changed
+     * since it was read. Copy counts are left alone, as they are maintained by borrows and
+     * returns, and the update only applies if nobody else has edited the book since it
+     * was read; otherwise it returns false.
+     */
+    public boolean updateBook(Book book) {
+        int dirtyFields = book.getDirtyFields();
+        if (dirtyFields == 0) {
+            System.out.println("No changes to save for: " + book.getTitle());
+            return true;
+        }
+        String sql = UPDATE_SQL.computeIfAbsent(dirtyFields, fields -> "UPDATE books SET " +
+                SqlUtils.assignments(UPDATE_COLUMNS, fields) + ", version = version + 1 " +
+                "WHERE book_id = ? AND version = ?");
+
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            // The locked row is the before-image, and tells a stale edit from a missing book
+            Book before = lockBooks(conn, Collections.singleton(book.getBookId())).get(book.getBookId());
+            if (before == null || before.getVersion() != book.getVersion()) {
+                conn.rollback();
+                if (before != null) {
+                    System.err.println("Book " + book.getBookId() + " was changed by someone else; reload it and try again.");
+                }
+                return false;
+            }
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int index = 1;
+                for (Book.Field field : Book.Field.values()) {
+                    if (book.isDirty(field)) {
+                        setField(pstmt, index++, book, field);
+                    }
+                }
+                pstmt.setInt(index++, book.getBookId());
+                pstmt.setInt(index, book.getVersion());
+                pstmt.executeUpdate();
+            }
+            conn.commit();
+
+            book.setVersion(book.getVersion() + 1);
+            book.clearDirty();
+            System.out.println("Book updated successfully: " + book.getTitle());
+            events.publish(ChangeEvent.updated(Book.class, book.getBookId(), before, new Book(book)));
+            return true;
+        } catch (SQLException e) {
+            rollback(conn);
             System.err.println("Error updating book: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            DatabaseConnection.closeConnection(conn);
         }
         return false;
     }
@@ -192,19 +300,33 @@ public class BookDAO {
     public boolean deleteBook(int bookId) {
         String sql = "DELETE FROM books WHERE book_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
 
-            pstmt.setInt(1, bookId);
-            int affectedRows = pstmt.executeUpdate();
+            // Locked so the before-image is the row actually deleted
+            Book before = lockBooks(conn, Collections.singleton(bookId)).get(bookId);
+            if (before == null) {
+                conn.rollback();
+                return false;
+            }
 
-            if (affectedRows > 0) {
-                System.out.println("Book deleted successfully!");
-                return true;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, bookId);
+                pstmt.executeUpdate();
             }
+            conn.commit();
+
+            System.out.println("Book deleted successfully!");
+            events.publish(ChangeEvent.deleted(Book.class, bookId, before));
+            return true;
         } catch (SQLException e) {
+            rollback(conn);
             System.err.println("Error deleting book: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            DatabaseConnection.closeConnection(conn);
         }
         return false;
     }
@@ -218,7 +340,10 @@ public class BookDAO {
             pstmt.setInt(1, availableCopies);
             pstmt.setInt(2, bookId);
 
-            return pstmt.executeUpdate() > 0;
+            if (pstmt.executeUpdate() > 0) {
+                events.publish(ChangeEvent.updated(Book.class, bookId, null, null));
+                return true;
+            }
         } catch (SQLException e) {
             System.err.println("Error updating available copies: " + e.getMessage());
             e.printStackTrace();
@@ -245,28 +370,208 @@ public class BookDAO {
         return false;
     }
 
-   
+    // ==================== Bulk operations (caller owns the DB transaction) ====================
+
+    /**
+     * Loads and row-locks the given books in one statement. Must be called with
+     * auto-commit disabled; the locks are held until the caller commits.
+     */
+    public Map<Integer, Book> lockBooks(Connection conn, Collection<Integer> bookIds) throws SQLException {
+        Map<Integer, Book> books = new HashMap<>();
+        if (bookIds.isEmpty()) {
+            return books;
+        }
+        String sql = "SELECT * FROM books WHERE book_id IN (" + SqlUtils.placeholders(bookIds.size()) +
+                ") FOR UPDATE";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (int bookId : bookIds) {
+                pstmt.setInt(index++, bookId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Book book = extractBookFromResultSet(rs);
+                    books.put(book.getBookId(), book);
+                }
+            }
+        }
+        return books;
+    }
+
+    // Applies relative changes to available_copies as a single batch
+    public void adjustAvailableCopies(Connection conn, Map<Integer, Integer> deltas) throws SQLException {
+        String sql = "UPDATE books SET available_copies = available_copies + ? WHERE book_id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (Map.Entry<Integer, Integer> entry : deltas.entrySet()) {
+                if (entry.getValue() == 0) {
+                    continue;
+                }
+                pstmt.setInt(1, entry.getValue());
+                pstmt.setInt(2, entry.getKey());
+                pstmt.addBatch();
+                events.stage(ChangeEvent.updated(Book.class, entry.getKey(), null, null));
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Takes one available copy of the book off this branch's catalogue for an inter-branch
+     * transfer. Returns the book as it was, or null if it has no copy on the shelf.
+     * Nothing is staged on the event bus: the row belongs to the source branch's database,
+     * and its id would be taken for a home-database book by subscribers.
+     */
+    public Book removeTransferCopy(Connection conn, int bookId) throws SQLException {
+        Book book = lockBooks(conn, Collections.singleton(bookId)).get(bookId);
+        if (book == null || book.getAvailableCopies() <= 0) {
+            return null;
+        }
+        String sql = "UPDATE books SET total_copies = total_copies - 1, available_copies = available_copies - 1 " +
+                "WHERE book_id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, bookId);
+            pstmt.executeUpdate();
+        }
+        return book;
+    }
+
+    /**
+     * Adds a transferred copy to this branch's catalogue, already out on loan: the title
+     * is matched by ISBN, or added if the branch does not stock it yet. Returns the book
+     * id in this branch's database.
+     */
+    public int addTransferredCopy(Connection conn, Book source, int branchId) throws SQLException {
+        Book existing = null;
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM books WHERE isbn = ? FOR UPDATE")) {
+            pstmt.setString(1, source.getIsbn());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    existing = extractBookFromResultSet(rs);
+                }
+            }
+        }
+
+        if (existing != null) {
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "UPDATE books SET total_copies = total_copies + 1 WHERE book_id = ?")) {
+                pstmt.setInt(1, existing.getBookId());
+                pstmt.executeUpdate();
+            }
+            Book after = new Book(existing);
+            after.setTotalCopies(existing.getTotalCopies() + 1);
+            events.stage(ChangeEvent.updated(Book.class, existing.getBookId(), existing, after));
+            return existing.getBookId();
+        }
+
+        String sql = "INSERT INTO books (title, author, isbn, publisher, publication_year, " +
+                "category, total_copies, available_copies, branch_id) VALUES (?, ?, ?, ?, ?, ?, 1, 0, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, source.getTitle());
+            pstmt.setString(2, source.getAuthor());
+            pstmt.setString(3, source.getIsbn());
+            pstmt.setString(4, source.getPublisher());
+            pstmt.setInt(5, source.getPublicationYear());
+            pstmt.setString(6, source.getCategory());
+            pstmt.setInt(7, branchId);
+            pstmt.executeUpdate();
+
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                if (!generatedKeys.next()) {
+                    throw new SQLException("No id generated for transferred book " + source.getIsbn());
+                }
+                Book added = new Book(source.getTitle(), source.getAuthor(), source.getIsbn(),
+                        source.getPublisher(), source.getPublicationYear(), source.getCategory(), 1, 0);
+                added.setBookId(generatedKeys.getInt(1));
+                added.setBranchId(branchId);
+                added.clearDirty();
+                events.stage(ChangeEvent.inserted(Book.class, added.getBookId(), added));
+                return added.getBookId();
+            }
+        }
+    }
+
+    // Deletes the given (already loaded) books; they become the before-images of the events
+    public int deleteBooks(Connection conn, Collection<Book> books) throws SQLException {
+        if (books.isEmpty()) {
+            return 0;
+        }
+        String sql = "DELETE FROM books WHERE book_id IN (" + SqlUtils.placeholders(books.size()) + ")";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (Book book : books) {
+                pstmt.setInt(index++, book.getBookId());
+            }
+            int deleted = pstmt.executeUpdate();
+            for (Book book : books) {
+                events.stage(ChangeEvent.deleted(Book.class, book.getBookId(), book));
+            }
+            return deleted;
+        }
+    }
+
+    private void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                System.err.println("Error rolling back transaction: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void setField(PreparedStatement pstmt, int index, Book book, Book.Field field)
+            throws SQLException {
+        switch (field) {
+            case TITLE:
+                pstmt.setString(index, book.getTitle());
+                break;
+            case AUTHOR:
+                pstmt.setString(index, book.getAuthor());
+                break;
+            case ISBN:
+                pstmt.setString(index, book.getIsbn());
+                break;
+            case PUBLISHER:
+                pstmt.setString(index, book.getPublisher());
+                break;
+            case PUBLICATION_YEAR:
+                pstmt.setInt(index, book.getPublicationYear());
+                break;
+            case CATEGORY:
+                pstmt.setString(index, book.getCategory());
+                break;
+        }
+    }
+
     private Book extractBookFromResultSet(ResultSet rs) throws SQLException {
+        ColumnIndex.Positions<Column> column = COLUMNS.of(rs);
         Book book = new Book();
-        book.setBookId(rs.getInt("book_id"));
-        book.setTitle(rs.getString("title"));
-        book.setAuthor(rs.getString("author"));
-        book.setIsbn(rs.getString("isbn"));
-        book.setPublisher(rs.getString("publisher"));
-        book.setPublicationYear(rs.getInt("publication_year"));
-        book.setCategory(rs.getString("category"));
-        book.setTotalCopies(rs.getInt("total_copies"));
-        book.setAvailableCopies(rs.getInt("available_copies"));
-
-        Timestamp createdAt = rs.getTimestamp("created_at");
+        book.setBookId(rs.getInt(column.of(Column.BOOK_ID)));
+        book.setTitle(rs.getString(column.of(Column.TITLE)));
+        book.setAuthor(rs.getString(column.of(Column.AUTHOR)));
+        book.setIsbn(rs.getString(column.of(Column.ISBN)));
+        book.setPublisher(rs.getString(column.of(Column.PUBLISHER)));
+        book.setPublicationYear(rs.getInt(column.of(Column.PUBLICATION_YEAR)));
+        book.setCategory(rs.getString(column.of(Column.CATEGORY)));
+        book.setTotalCopies(rs.getInt(column.of(Column.TOTAL_COPIES)));
+        book.setAvailableCopies(rs.getInt(column.of(Column.AVAILABLE_COPIES)));
+
+        Timestamp createdAt = rs.getTimestamp(column.of(Column.CREATED_AT));
         if (createdAt != null) {
             book.setCreatedAt(createdAt.toLocalDateTime());
         }
 
-        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        Timestamp updatedAt = rs.getTimestamp(column.of(Column.UPDATED_AT));
         if (updatedAt != null) {
             book.setUpdatedAt(updatedAt.toLocalDateTime());
         }
+        book.setVersion(rs.getInt(column.of(Column.VERSION)));
+        book.setBranchId(rs.getInt(column.of(Column.BRANCH_ID)));
+        book.clearDirty();
 
         return book;
     }
@@ -0,0 +1,42 @@
+package com.library.service;
+
+/**
+ * Outcome of a single item in a bulk borrow/return/delete request.
+ */
+public class BulkResult {
+
+    private final int itemId;
+    private final boolean success;
+    private final String message;
+
+    public BulkResult(int itemId, boolean success, String message) {
+        this.itemId = itemId;
+        this.success = success;
+        this.message = message;
+    }
+
+    public static BulkResult ok(int itemId, String message) {
+        return new BulkResult(itemId, true, message);
+    }
+
+    public static BulkResult failed(int itemId, String message) {
+        return new BulkResult(itemId, false, message);
+    }
+
+    public int getItemId() {
+        return itemId;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d: %s - %s", itemId, success ? "OK" : "FAILED", message);
+    }
+}
@@ -0,0 +1,76 @@
+package com.library.events;
+
+/**
+ * A committed change to one row of books, users or transactions. {@code before} and
+ * {@code after} are row images when the DAO had them at hand or could load them by
+ * primary key while someone was subscribed; either may be null otherwise (always null
+ * for before on INSERT and after on DELETE). Subscribers that need the current row
+ * re-read it on their own thread. Payloads are shared between subscribers: read only.
+ */
+public final class ChangeEvent<T> {
+
+    public enum Operation {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final Operation operation;
+    private final Class<T> entityType;
+    private final int entityId;
+    private final T before;
+    private final T after;
+    private final long timestamp;
+
+    private ChangeEvent(Operation operation, Class<T> entityType, int entityId, T before, T after) {
+        this.operation = operation;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.before = before;
+        this.after = after;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public static <T> ChangeEvent<T> inserted(Class<T> entityType, int entityId, T after) {
+        return new ChangeEvent<>(Operation.INSERT, entityType, entityId, null, after);
+    }
+
+    public static <T> ChangeEvent<T> updated(Class<T> entityType, int entityId, T before, T after) {
+        return new ChangeEvent<>(Operation.UPDATE, entityType, entityId, before, after);
+    }
+
+    public static <T> ChangeEvent<T> deleted(Class<T> entityType, int entityId, T before) {
+        return new ChangeEvent<>(Operation.DELETE, entityType, entityId, before, null);
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public Class<T> getEntityType() {
+        return entityType;
+    }
+
+    public boolean isFor(Class<?> type) {
+        return entityType == type;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public T getBefore() {
+        return before;
+    }
+
+    public T getAfter() {
+        return after;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " " + entityType.getSimpleName() + " #" + entityId;
+    }
+}
@@ -0,0 +1,171 @@
+package com.library.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process change-data-capture stream fed by the DAOs. Events go into a fixed ring
+ * buffer: producers claim a sequence with one atomic increment, write the slot and mark
+ * it published; each subscriber runs on its own thread and follows the ring with its
+ * own cursor, so no locks are taken on either side. A producer only waits if the ring
+ * is full, i.e. the slowest subscriber is a whole ring behind.
+ *
+ * Writes made on a caller-owned connection are staged per thread and only published
+ * when the caller reports the commit via {@link #publishStaged()}.
+ */
+public class ChangeEventBus {
+
+    private static final int CAPACITY = 1 << 14;
+    private static final int MASK = CAPACITY - 1;
+    private static final int IDLE_SPINS = 100;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    private static final long FULL_PARK_NANOS = 10_000;
+    private static final long SHUTDOWN_WAIT_MILLIS = 5_000;
+
+    private static final ChangeEventBus INSTANCE = new ChangeEventBus();
+
+    private final AtomicReferenceArray<ChangeEvent<?>> slots = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private final AtomicLong claimed = new AtomicLong();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<List<ChangeEvent<?>>> staged = ThreadLocal.withInitial(ArrayList::new);
+
+    private ChangeEventBus() {
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    public static ChangeEventBus getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * True if anyone is listening. DAOs check this before loading before-images, so
+     * without subscribers the change stream costs nothing.
+     */
+    public boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    // Starts a daemon thread that delivers every event published from now on
+    public void subscribe(String name, ChangeListener listener) {
+        Subscriber subscriber = new Subscriber(name, listener, claimed.get());
+        subscribers.add(subscriber);
+        subscriber.thread.start();
+    }
+
+    // Stops the subscribers once they have handled everything already published
+    public void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.running = false;
+            LockSupport.unpark(subscriber.thread);
+        }
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.thread.join(SHUTDOWN_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        subscribers.clear();
+    }
+
+    public void publish(ChangeEvent<?> event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        long sequence = claimed.getAndIncrement();
+        while (sequence - CAPACITY >= slowestSubscriber()) {
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        int index = (int) (sequence & MASK);
+        slots.set(index, event);
+        published.set(index, sequence);
+    }
+
+    // Holds an event from a write on a caller-owned connection until the commit
+    public void stage(ChangeEvent<?> event) {
+        if (!subscribers.isEmpty()) {
+            staged.get().add(event);
+        }
+    }
+
+    // Call after committing a connection that staged events
+    public void publishStaged() {
+        List<ChangeEvent<?>> events = staged.get();
+        for (ChangeEvent<?> event : events) {
+            publish(event);
+        }
+        events.clear();
+    }
+
+    /**
+     * Call in the finally block of every transaction that may stage events, so a rollback
+     * or an unexpected exception cannot leak them into the thread's next publishStaged().
+     * Does nothing once they have been published.
+     */
+    public void discardStaged() {
+        staged.get().clear();
+    }
+
+    private long slowestSubscriber() {
+        long slowest = Long.MAX_VALUE;
+        for (Subscriber subscriber : subscribers) {
+            slowest = Math.min(slowest, subscriber.next.get());
+        }
+        return slowest;
+    }
+
+    private class Subscriber implements Runnable {
+        final String name;
+        final ChangeListener listener;
+        final AtomicLong next;
+        final Thread thread;
+        volatile boolean running = true;
+
+        Subscriber(String name, ChangeListener listener, long start) {
+            this.name = name;
+            this.listener = listener;
+            this.next = new AtomicLong(start);
+            this.thread = new Thread(this, "cdc-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long sequence = next.get();
+            int idle = 0;
+            while (true) {
+                int index = (int) (sequence & MASK);
+                if (published.get(index) != sequence) {
+                    if (!running) {
+                        return;
+                    }
+                    if (++idle < IDLE_SPINS) {
+                        Thread.yield();
+                    } else {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                    continue;
+                }
+                idle = 0;
+                ChangeEvent<?> event = slots.get(index);
+                try {
+                    listener.onChange(event);
+                } catch (RuntimeException e) {
+                    System.err.println("Error in change subscriber " + name + " handling " + event + ": "
+                            + e.getMessage());
+                    e.printStackTrace();
+                }
+                next.lazySet(++sequence);
+            }
+        }
+    }
+}
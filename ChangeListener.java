@@ -0,0 +1,9 @@
+package com.library.events;
+
+/**
+ * Receives change events on the subscriber's own thread, in publication order.
+ */
+public interface ChangeListener {
+
+    void onChange(ChangeEvent<?> event);
+}
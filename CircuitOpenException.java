@@ -0,0 +1,16 @@
+package com.library.util;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Thrown instead of opening a connection while the circuit breaker is open, so callers
+ * fail at once rather than waiting out a connect timeout against a database that is down.
+ */
+public class CircuitOpenException extends SQLTransientConnectionException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(long retryInMillis) {
+        super("Database unavailable; not retrying for another " + (retryInMillis + 999) / 1000 + "s", "08000");
+    }
+}
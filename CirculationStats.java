@@ -0,0 +1,202 @@
+package com.library.service;
+
+import com.library.dao.StatisticsDAO;
+import com.library.events.ChangeEvent;
+import com.library.events.ChangeListener;
+import com.library.model.Book;
+import com.library.model.User;
+import com.library.util.SlidingWindowCounter;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running circulation aggregates for the dashboard. Seeded once from the database on
+ * startup and then updated from borrow/return events, so reading them never touches
+ * the database. Copy totals follow book change events from the DAO layer.
+ */
+public class CirculationStats implements ChangeListener {
+
+    private static final int DAYS_KEPT = 30;
+
+    private final StatisticsDAO statisticsDAO;
+
+    private final LongAdder totalLoans = new LongAdder();
+    private final ConcurrentHashMap<LocalDate, LongAdder> loansPerDay = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> loansByCategory = new ConcurrentHashMap<>();
+    private final LongAdder[] loansByMembership = new LongAdder[User.MembershipType.values().length];
+
+
+    private final AtomicLong totalCopies = new AtomicLong();
+    private final AtomicLong copiesOnLoan = new AtomicLong();
+
+    private final SlidingWindowCounter loansLastHour = new SlidingWindowCounter(TimeUnit.HOURS.toMillis(1), 60);
+    private final SlidingWindowCounter loansLastDay = new SlidingWindowCounter(TimeUnit.DAYS.toMillis(1), 96);
+    private final SlidingWindowCounter loansLastWeek = new SlidingWindowCounter(TimeUnit.DAYS.toMillis(7), 168);
+    private final SlidingWindowCounter returnsLastHour = new SlidingWindowCounter(TimeUnit.HOURS.toMillis(1), 60);
+    private final SlidingWindowCounter returnsLastDay = new SlidingWindowCounter(TimeUnit.DAYS.toMillis(1), 96);
+    private final SlidingWindowCounter returnsLastWeek = new SlidingWindowCounter(TimeUnit.DAYS.toMillis(7), 168);
+
+    public CirculationStats(StatisticsDAO statisticsDAO) {
+        this.statisticsDAO = statisticsDAO;
+        for (int i = 0; i < loansByMembership.length; i++) {
+            loansByMembership[i] = new LongAdder();
+        }
+    }
+
+    // Loads the historical totals; the sliding windows start empty
+    public void load() {
+        for (Map.Entry<String, Long> entry : statisticsDAO.getLoanCountsByCategory().entrySet()) {
+            counter(loansByCategory, categoryKey(entry.getKey())).add(entry.getValue());
+            totalLoans.add(entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : statisticsDAO.getLoanCountsByMembershipType().entrySet()) {
+            loansByMembership[User.MembershipType.valueOf(entry.getKey()).ordinal()].add(entry.getValue());
+        }
+        for (Map.Entry<LocalDate, Long> entry : statisticsDAO.getLoanCountsByDay(
+                LocalDate.now().minusDays(DAYS_KEPT - 1)).entrySet()) {
+            counter(loansPerDay, entry.getKey()).add(entry.getValue());
+        }
+
+        long[] copies = statisticsDAO.getCopyTotals();
+        totalCopies.set(copies[0]);
+        copiesOnLoan.set(copies[1]);
+    }
+
+    // ==================== Events ====================
+
+    public void recordBorrow(Book book, User.MembershipType membershipType) {
+        totalLoans.increment();
+        copiesOnLoan.incrementAndGet();
+        loansLastHour.increment();
+        loansLastDay.increment();
+        loansLastWeek.increment();
+
+        LocalDate today = LocalDate.now();
+        counter(loansPerDay, today).increment();
+        if (loansPerDay.size() > DAYS_KEPT) {
+            loansPerDay.keySet().removeIf(day -> day.isBefore(today.minusDays(DAYS_KEPT - 1)));
+        }
+
+        counter(loansByCategory, categoryKey(book.getCategory())).increment();
+        if (membershipType != null) {
+            loansByMembership[membershipType.ordinal()].increment();
+        }
+    }
+
+    public void recordReturn() {
+        copiesOnLoan.decrementAndGet();
+        returnsLastHour.increment();
+        returnsLastDay.increment();
+        returnsLastWeek.increment();
+    }
+
+    // Partial updates (no before or after image) never change total copies
+    @Override
+    public void onChange(ChangeEvent<?> event) {
+        if (!event.isFor(Book.class)) {
+            return;
+        }
+        Book before = (Book) event.getBefore();
+        Book after = (Book) event.getAfter();
+        switch (event.getOperation()) {
+            case INSERT:
+                totalCopies.addAndGet(after.getTotalCopies());
+                break;
+            case DELETE:
+                if (before != null) {
+                    totalCopies.addAndGet(-before.getTotalCopies());
+                }
+                break;
+            case UPDATE:
+                if (before != null && after != null) {
+                    totalCopies.addAndGet(after.getTotalCopies() - before.getTotalCopies());
+                }
+                break;
+        }
+    }
+
+    // ==================== Queries ====================
+
+    public long getTotalLoans() {
+        return totalLoans.sum();
+    }
+
+    public long getLoansToday() {
+        LongAdder count = loansPerDay.get(LocalDate.now());
+        return count != null ? count.sum() : 0;
+    }
+
+    public Map<LocalDate, Long> getLoansPerDay() {
+        Map<LocalDate, Long> result = new TreeMap<>();
+        for (Map.Entry<LocalDate, LongAdder> entry : loansPerDay.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return result;
+    }
+
+    public Map<String, Long> getLoansByCategory() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : loansByCategory.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return result;
+    }
+
+    public long getLoansByMembershipType(User.MembershipType type) {
+        return loansByMembership[type.ordinal()].sum();
+    }
+
+    public long getLoansLastHour() {
+        return loansLastHour.sum();
+    }
+
+    public long getLoansLastDay() {
+        return loansLastDay.sum();
+    }
+
+    public long getLoansLastWeek() {
+        return loansLastWeek.sum();
+    }
+
+    public long getReturnsLastHour() {
+        return returnsLastHour.sum();
+    }
+
+    public long getReturnsLastDay() {
+        return returnsLastDay.sum();
+    }
+
+    public long getReturnsLastWeek() {
+        return returnsLastWeek.sum();
+    }
+
+    public long getTotalCopies() {
+        return totalCopies.get();
+    }
+
+    public long getCopiesOnLoan() {
+        return copiesOnLoan.get();
+    }
+
+    // Share of all copies currently out on loan, 0.0 - 1.0
+    public double getUtilization() {
+        long total = totalCopies.get();
+        return total > 0 ? (double) copiesOnLoan.get() / total : 0.0;
+    }
+
+    // ==================== Helpers ====================
+
+    private static String categoryKey(String category) {
+        return category != null ? category : "(none)";
+    }
+
+    private static <K> LongAdder counter(ConcurrentHashMap<K, LongAdder> map, K key) {
+        return map.computeIfAbsent(key, k -> new LongAdder());
+    }
+}
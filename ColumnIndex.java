@@ -0,0 +1,104 @@
+package com.library.util;
+
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column positions for a row mapper, so rows are read by index instead of by name. The
+ * mapper lists its columns as an enum whose constant names match the column labels.
+ * Positions are resolved once per distinct result shape (the column labels of the
+ * query) and cached; rows after the first of a result set reuse them without touching
+ * the metadata.
+ */
+public final class ColumnIndex<C extends Enum<C>> {
+
+    private final String[] labels;
+    private final ConcurrentHashMap<String, Positions<C>> byShape = new ConcurrentHashMap<>();
+
+    // The result set last mapped on each thread; weak so a finished result is not kept alive
+    private final ThreadLocal<Last<C>> last = new ThreadLocal<>();
+
+    public ColumnIndex(Class<C> columns) {
+        C[] constants = columns.getEnumConstants();
+        labels = new String[constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            labels[i] = constants[i].name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public Positions<C> of(ResultSet rs) throws SQLException {
+        Last<C> cached = last.get();
+        if (cached != null && cached.resultSet.get() == rs) {
+            return cached.positions;
+        }
+
+        ResultSetMetaData meta = rs.getMetaData();
+        String shape = shape(meta);
+        Positions<C> positions = byShape.get(shape);
+        if (positions == null) {
+            positions = resolve(meta);
+            Positions<C> raced = byShape.putIfAbsent(shape, positions);
+            if (raced != null) {
+                positions = raced;
+            }
+        }
+        last.set(new Last<>(rs, positions));
+        return positions;
+    }
+
+    private Positions<C> resolve(ResultSetMetaData meta) throws SQLException {
+        int[] index = new int[labels.length];
+        // Later duplicates are ignored, as with ResultSet.findColumn
+        for (int column = meta.getColumnCount(); column >= 1; column--) {
+            String label = meta.getColumnLabel(column);
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i].equalsIgnoreCase(label)) {
+                    index[i] = column;
+                }
+            }
+        }
+        return new Positions<>(labels, index);
+    }
+
+    private static String shape(ResultSetMetaData meta) throws SQLException {
+        int count = meta.getColumnCount();
+        StringBuilder sb = new StringBuilder(count * 12);
+        for (int column = 1; column <= count; column++) {
+            sb.append(meta.getColumnLabel(column)).append(',');
+        }
+        return sb.toString();
+    }
+
+    public static final class Positions<C extends Enum<C>> {
+        private final String[] labels;
+        private final int[] index;
+
+        private Positions(String[] labels, int[] index) {
+            this.labels = labels;
+            this.index = index;
+        }
+
+        // 1-based position of the column, for the ResultSet getters
+        public int of(C column) throws SQLException {
+            int position = index[column.ordinal()];
+            if (position == 0) {
+                throw new SQLException("Column '" + labels[column.ordinal()] + "' not found in result");
+            }
+            return position;
+        }
+    }
+
+    private static final class Last<C extends Enum<C>> {
+        final WeakReference<ResultSet> resultSet;
+        final Positions<C> positions;
+
+        Last(ResultSet resultSet, Positions<C> positions) {
+            this.resultSet = new WeakReference<>(resultSet);
+            this.positions = positions;
+        }
+    }
+}
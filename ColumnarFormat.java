@@ -0,0 +1,55 @@
+package com.library.analytics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Low-level encoding shared by the columnar export files: LEB128 variable-length
+ * integers and zigzag mapping so small negative deltas stay small.
+ */
+final class ColumnarFormat {
+
+    static final int MAGIC = 0x4C42434C; // "LBCL"
+    static final int VERSION = 1;
+    static final String SEGMENT_SUFFIX = ".lbc.gz";
+
+    private ColumnarFormat() {
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static void writeSigned(DataOutput out, long value) throws IOException {
+        writeVarLong(out, zigzag(value));
+    }
+
+    static long readSigned(DataInput in) throws IOException {
+        return unzigzag(readVarLong(in));
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,303 @@
+package com.library.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A small pool of physical connections to one database URL. Callers get a wrapper whose
+ * close() hands the connection back instead of closing it, so existing try-with-resources
+ * code is unchanged. Pool limits, timeouts and credentials come from {@link LibraryConfig}
+ * and are read when used, so a config reload takes effect for the next checkout.
+ * Statements created through the wrapper get the time limits from {@link QueryTimeouts}.
+ */
+public class ConnectionPool {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String name;
+    private final String url;
+    private final LibraryConfig config = LibraryConfig.get();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition returned = lock.newCondition();
+    private final Deque<Idle> idle = new ArrayDeque<>();
+    private int open;
+    private boolean closed;
+
+    public ConnectionPool(String name, String url) {
+        this.name = name;
+        this.url = url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Checks out a connection, reusing the most recently returned one when possible.
+     * Waits up to pool.acquire.timeout.ms when pool.max.size connections are already out.
+     */
+    public Connection getConnection() throws SQLException {
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(config.getLong("pool.acquire.timeout.ms", 5000));
+
+        while (true) {
+            Idle reuse = null;
+            boolean create = false;
+            lock.lock();
+            try {
+                while (reuse == null && !create) {
+                    if (closed) {
+                        throw new SQLException("Connection pool " + name + " is shut down");
+                    }
+                    reuse = idle.pollFirst();
+                    if (reuse != null) {
+                        break;
+                    } else if (open < config.getInt("pool.max.size", 10)) {
+                        open++;
+                        create = true;
+                    } else {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            throw new SQLException("Timed out waiting for a " + name + " database connection ("
+                                    + open + " in use)");
+                        }
+                        returned.awaitNanos(remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted waiting for a database connection", e);
+            } finally {
+                lock.unlock();
+            }
+
+            if (create) {
+                Connection physical;
+                try {
+                    physical = open();
+                } catch (SQLException e) {
+                    discard(null);
+                    throw e;
+                }
+                return wrap(physical);
+            }
+            if (isUsable(reuse)) {
+                return wrap(reuse.connection);
+            }
+            discard(reuse.connection);
+        }
+    }
+
+    // Closes idle connections and refuses further checkouts; connections still out close on return
+    public void shutdown() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Idle entry : idle) {
+                closeQuietly(entry.connection);
+                open--;
+            }
+            idle.clear();
+            returned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Properties props = new Properties();
+        props.putAll(config.getSection("db.jdbc."));
+        props.setProperty("user", config.getString("db.username", "root"));
+        props.setProperty("password", config.getString("db.password", ""));
+        props.setProperty("connectTimeout", String.valueOf(config.getLong("db.connect.timeout.ms", 5000)));
+        props.setProperty("socketTimeout", String.valueOf(config.getLong("db.socket.timeout.ms", 0)));
+        Connection connection = DriverManager.getConnection(url, props);
+        System.out.println("Database connection established! (" + name + ")");
+        return connection;
+    }
+
+    // Connections idle for a while are checked before reuse
+    private boolean isUsable(Idle entry) {
+        long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.since);
+        if (idleMillis < config.getLong("pool.validate.after.ms", 30000)) {
+            return true;
+        }
+        try {
+            return entry.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(Connection physical, boolean resetSocketTimeout) {
+        try {
+            if (resetSocketTimeout) {
+                QueryTimeouts.resetSocketTimeout(physical);
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(physical);
+            return;
+        }
+
+        lock.lock();
+        try {
+            // The pool may have been shrunk by a config reload
+            if (closed || open > config.getInt("pool.max.size", 10)) {
+                closeQuietly(physical);
+                open--;
+            } else {
+                idle.addFirst(new Idle(physical));
+            }
+            returned.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void discard(Connection physical) {
+        if (physical != null) {
+            closeQuietly(physical);
+        }
+        lock.lock();
+        try {
+            open--;
+            returned.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Connection wrap(Connection physical) throws SQLException {
+        boolean socketTimeoutSet;
+        try {
+            socketTimeoutSet = QueryTimeouts.applySocketTimeout(physical);
+        } catch (SQLException e) {
+            discard(physical);
+            throw e;
+        }
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new Handler(physical, socketTimeoutSet));
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    private static final class Idle {
+        final Connection connection;
+        final long since = System.nanoTime();
+
+        Idle(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    private final class Handler implements InvocationHandler {
+        private final Connection physical;
+        private final boolean socketTimeoutSet;
+        private boolean released;
+
+        Handler(Connection physical, boolean socketTimeoutSet) {
+            this.physical = physical;
+            this.socketTimeoutSet = socketTimeoutSet;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(physical, socketTimeoutSet);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + name + "]" + (released ? " (returned)" : "");
+                default:
+                    if (released) {
+                        throw new SQLException("Connection has been returned to the pool");
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Statement) {
+                        return wrapStatement((Statement) result, method.getReturnType(), (Connection) proxy);
+                    }
+                    return result;
+            }
+        }
+    }
+
+    private static Object wrapStatement(Statement statement, Class<?> type, Connection owner) throws SQLException {
+        try {
+            QueryTimeouts.apply(statement);
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
+        return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] { type },
+                new StatementHandler(statement, owner));
+    }
+
+    // Counts timeouts and keeps getConnection() from exposing the physical connection
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final Connection owner;
+
+        StatementHandler(Statement statement, Connection owner) {
+            this.statement = statement;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        if (e.getCause() instanceof SQLException) {
+                            QueryTimeouts.recordFailure((SQLException) e.getCause());
+                        }
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
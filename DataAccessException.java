@@ -0,0 +1,37 @@
+package com.library.util;
+
+/**
+ * A database call that failed, as opposed to one that found nothing. The kind tells
+ * callers whether trying again later can help.
+ */
+public class DataAccessException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind {
+        // Deadlock or lock wait timeout that outlasted the retries
+        CONFLICT,
+        // Database unreachable, or calls are being turned away while it recovers
+        UNAVAILABLE,
+        // The query or the request it belongs to ran out of time
+        TIMEOUT,
+        // Anything else, e.g. bad SQL or a constraint violation
+        FAILED
+    }
+
+    private final Kind kind;
+
+    public DataAccessException(Kind kind, String message, Throwable cause) {
+        super(message, cause);
+        this.kind = kind;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    // True if the same call may succeed later
+    public boolean isTransient() {
+        return kind != Kind.FAILED;
+    }
+}
@@ -1,19 +1,27 @@
 package com.library.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DatabaseConnection {
     
-    // Database configuration
-    private static final String URL = "jdbc:mysql://localhost:3306/library_management";
-    private static final String USERNAME = "root";
-    private static final String PASSWORD = "Ketan@09"; // Change this to your MySQL password
+    // Database configuration comes from library.properties (see LibraryConfig);
+    // db.url and db.replicas are read once at startup
+    private static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/library_management";
     
     // JDBC driver name
     private static final String DRIVER = "com.mysql.cj.jdbc.Driver";
     
+    private static final LibraryConfig CONFIG = LibraryConfig.get();
+    private static final ConnectionPool PRIMARY = new ConnectionPool("primary",
+            CONFIG.getString("db.url", DEFAULT_URL));
+    private static final ResilientExecutor RESILIENCE = ResilientExecutor.get();
+    
+    // Read replicas, e.g. db.replicas=jdbc:mysql://replica1:3306/library_management,...
+    private static final ReplicaRouter REPLICAS = new ReplicaRouter(replicaUrls());
+    
     static {
         try {
             // Load MySQL JDBC Driver
@@ -23,19 +31,56 @@ public class DatabaseConnection {
             System.err.println("MySQL JDBC Driver not found!");
             e.printStackTrace();
         }
+        REPLICAS.startHealthChecks(CONFIG.getLong("db.replica.check.seconds", 10));
     }
     
+    // Primary connection; use for writes and for reads that must see them. Fails at
+    // once with CircuitOpenException while the primary is known to be down.
     public static Connection getConnection() throws SQLException {
+        RESILIENCE.beforeConnect();
         try {
-            Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
-            System.out.println("Database connection established!");
+            Connection connection = PRIMARY.getConnection();
+            RESILIENCE.afterConnect(null);
             return connection;
         } catch (SQLException e) {
+            RESILIENCE.afterConnect(e);
             System.err.println("Failed to establish database connection!");
             throw e;
         }
     }
     
+    /**
+     * Connection for read-only queries that can tolerate a few seconds of replication lag
+     * (searches, listings, reports, history). Goes to a healthy replica when any are
+     * configured and falls back to the primary otherwise.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        if (REPLICAS.hasReplicas()) {
+            Connection connection = REPLICAS.getConnection();
+            if (connection != null) {
+                return connection;
+            }
+        }
+        return getConnection();
+    }
+    
+    private static List<String> replicaUrls() {
+        List<String> urls = new ArrayList<>();
+        for (String url : CONFIG.getString("db.replicas", "").split(",")) {
+            if (!url.trim().isEmpty()) {
+                urls.add(url.trim());
+            }
+        }
+        return urls;
+    }
+    
+    // Closes pooled connections; call once on application exit
+    public static void shutdown() {
+        ShardRouter.get().shutdown();
+        REPLICAS.shutdown();
+        PRIMARY.shutdown();
+    }
+    
     public static void closeConnection(Connection connection) {
         if (connection != null) {
             try {
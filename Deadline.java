@@ -0,0 +1,65 @@
+package com.library.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time budget for the request being handled on the current thread. LibraryService
+ * operations start one (see AdmissionController); queue waits, retries and every query
+ * issued on the thread are limited to what is left of it.
+ */
+public final class Deadline {
+
+    public static final long NONE = Long.MAX_VALUE;
+
+    // System.nanoTime() at which the current request runs out of time
+    private static final ThreadLocal<Long> EXPIRES_AT = new ThreadLocal<>();
+
+    private Deadline() {
+    }
+
+    /**
+     * Starts a budget for the current thread, or keeps the existing one if it ends
+     * sooner. Close the scope when the request finishes. A budget of 0 or less means
+     * no limit.
+     */
+    public static Scope start(long budgetMillis) {
+        Long previous = EXPIRES_AT.get();
+        if (budgetMillis > 0) {
+            long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+            if (previous == null || expiresAt - previous < 0) {
+                EXPIRES_AT.set(expiresAt);
+            }
+        }
+        return new Scope(previous);
+    }
+
+    // Milliseconds left, NONE if no budget is set; 0 or less once it has run out
+    public static long remainingMillis() {
+        Long expiresAt = EXPIRES_AT.get();
+        if (expiresAt == null) {
+            return NONE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime());
+    }
+
+    public static boolean isExpired() {
+        return remainingMillis() <= 0;
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final Long previous;
+
+        private Scope(Long previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                EXPIRES_AT.remove();
+            } else {
+                EXPIRES_AT.set(previous);
+            }
+        }
+    }
+}
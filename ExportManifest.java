@@ -0,0 +1,77 @@
+package com.library.analytics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.Properties;
+
+/**
+ * Export state kept next to the data: the updated_at watermark up to which rows have been
+ * exported and the number of the last run, which orders segment files so later runs win.
+ */
+public class ExportManifest {
+
+    public static final String FILE_NAME = "manifest.properties";
+
+    private final File file;
+    private Timestamp watermark;
+    private int lastRun;
+    private long exportedRows;
+
+    private ExportManifest(File file) {
+        this.file = file;
+    }
+
+    public static ExportManifest load(File exportDir) throws IOException {
+        ExportManifest manifest = new ExportManifest(new File(exportDir, FILE_NAME));
+        if (manifest.file.isFile()) {
+            Properties props = new Properties();
+            try (InputStream in = new FileInputStream(manifest.file)) {
+                props.load(in);
+            }
+            String watermark = props.getProperty("watermark", "");
+            manifest.watermark = watermark.isEmpty() ? null : Timestamp.valueOf(watermark);
+            manifest.lastRun = Integer.parseInt(props.getProperty("last.run", "0"));
+            manifest.exportedRows = Long.parseLong(props.getProperty("exported.rows", "0"));
+        }
+        return manifest;
+    }
+
+    // Null until the first export has completed
+    public Timestamp getWatermark() {
+        return watermark;
+    }
+
+    public int getLastRun() {
+        return lastRun;
+    }
+
+    public long getExportedRows() {
+        return exportedRows;
+    }
+
+    // Records a completed run; written via a temp file so a crash leaves the old manifest
+    public void commitRun(int run, Timestamp newWatermark, long rows) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("watermark", newWatermark.toString());
+        props.setProperty("last.run", String.valueOf(run));
+        props.setProperty("exported.rows", String.valueOf(exportedRows + rows));
+
+        File tmp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            props.store(out, "Transaction history export");
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        watermark = newWatermark;
+        lastRun = run;
+        exportedRows += rows;
+    }
+}
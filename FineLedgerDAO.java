@@ -0,0 +1,124 @@
+package com.library.dao;
+
+import com.library.util.DatabaseConnection;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.Map;
+
+/**
+ * Running per-user fine totals, kept in step with transactions.fine_amount so that
+ * balance lookups are a primary-key read instead of a SUM over the user's history.
+ * Every change to a fine must be applied here as a delta in the same DB transaction.
+ */
+public class FineLedgerDAO {
+
+    private static final String ADD_FINE_SQL = "INSERT INTO fine_ledger (user_id, total_fines) VALUES (?, ?) " +
+            "ON DUPLICATE KEY UPDATE total_fines = total_fines + VALUES(total_fines)";
+
+    public void addFine(Connection conn, int userId, BigDecimal delta) throws SQLException {
+        if (delta.signum() == 0) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(ADD_FINE_SQL)) {
+            pstmt.setInt(1, userId);
+            pstmt.setBigDecimal(2, delta);
+            pstmt.executeUpdate();
+        }
+    }
+
+    public void addFines(Connection conn, Map<Integer, BigDecimal> deltasByUser) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(ADD_FINE_SQL)) {
+            for (Map.Entry<Integer, BigDecimal> entry : deltasByUser.entrySet()) {
+                if (entry.getValue().signum() == 0) {
+                    continue;
+                }
+                pstmt.setInt(1, entry.getKey());
+                pstmt.setBigDecimal(2, entry.getValue());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    public BigDecimal getTotalFines(int userId) {
+        String sql = "SELECT total_fines FROM fine_ledger WHERE user_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return rs.getBigDecimal("total_fines");
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving fine ledger: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return BigDecimal.ZERO;
+    }
+
+    // True if the ledger is empty although some loan carries a fine, i.e. it was never seeded
+    public boolean needsRebuild() {
+        String sql = "SELECT NOT EXISTS (SELECT 1 FROM fine_ledger) " +
+                "AND (EXISTS (SELECT 1 FROM transactions WHERE fine_amount <> 0) " +
+                "OR EXISTS (SELECT 1 FROM transactions_archive WHERE fine_amount <> 0))";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+
+            return rs.next() && rs.getBoolean(1);
+        } catch (SQLException e) {
+            System.err.println("Error checking fine ledger: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Recomputes every ledger row from the transactions table. Run on startup when
+     * needsRebuild() finds a database upgraded from before the ledger existed, and
+     * usable for reconciliation; not for regular use.
+     */
+    public boolean rebuildLedger() {
+        String deleteSql = "DELETE FROM fine_ledger";
+        String insertSql = "INSERT INTO fine_ledger (user_id, total_fines) " +
+                "SELECT user_id, SUM(fine_amount) FROM (" +
+                "SELECT user_id, fine_amount FROM transactions " +
+                "UNION ALL SELECT user_id, fine_amount FROM transactions_archive) t " +
+                "JOIN users u USING (user_id) GROUP BY user_id";
+
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(deleteSql);
+                int rows = stmt.executeUpdate(insertSql);
+                conn.commit();
+                System.out.println("Fine ledger rebuilt for " + rows + " user(s).");
+                return true;
+            }
+        } catch (SQLException e) {
+            rollback(conn);
+            System.err.println("Error rebuilding fine ledger: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            DatabaseConnection.closeConnection(conn);
+        }
+        return false;
+    }
+
+    private void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                System.err.println("Error rolling back transaction: " + e.getMessage());
+            }
+        }
+    }
+}
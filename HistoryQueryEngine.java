@@ -0,0 +1,241 @@
+package com.library.analytics;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Aggregate queries over the exported transaction history. The segments are loaded into
+ * memory once (and again after each new export run); a query scans every segment's
+ * primitive columns in a tight loop, segments in parallel on a fork-join pool, and merges
+ * the per-segment partials. MySQL is never queried.
+ */
+public class HistoryQueryEngine {
+
+    // One exported segment, with the rows superseded by a later run masked out
+    private static class Part {
+        final YearMonth month;
+        final TransactionSegment segment;
+        final BitSet live;
+
+        Part(YearMonth month, TransactionSegment segment, BitSet live) {
+            this.month = month;
+            this.segment = segment;
+            this.live = live;
+        }
+    }
+
+    private final File exportDir;
+    private final ForkJoinPool pool;
+    private volatile List<Part> parts = Collections.emptyList();
+    private volatile int loadedRun = -1;
+
+    public HistoryQueryEngine(File exportDir) {
+        this.exportDir = exportDir;
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Loads the export if it changed since the last load. Returns false if it could not be
+     * read; queries then keep answering from the previous load.
+     */
+    public synchronized boolean refresh() {
+        try {
+            ExportManifest manifest = ExportManifest.load(exportDir);
+            if (manifest.getLastRun() == loadedRun) {
+                return true;
+            }
+
+            File[] monthDirs = new File(exportDir, TransactionExporter.TABLE_DIR).listFiles(File::isDirectory);
+            List<File> months = monthDirs != null ? Arrays.asList(monthDirs) : Collections.emptyList();
+            int lastRun = manifest.getLastRun();
+            parts = pool.submit(() -> months.parallelStream()
+                    .flatMap(dir -> loadMonth(dir, lastRun).stream())
+                    .collect(Collectors.toList())).get();
+            loadedRun = lastRun;
+            return true;
+        } catch (IOException | InterruptedException | ExecutionException | RuntimeException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            System.err.println("Error loading transaction history export: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    public long getRowCount() {
+        long rows = 0;
+        for (Part part : parts) {
+            rows += part.live.cardinality();
+        }
+        return rows;
+    }
+
+    // ==================== Queries ====================
+
+    // Loans per borrow month, then per book category
+    public Map<YearMonth, Map<String, Long>> getLoansByMonthAndCategory() {
+        return scan(part -> {
+            TransactionSegment segment = part.segment;
+            long[] counts = new long[segment.getCategoryDictionary().size()];
+            for (int row = part.live.nextSetBit(0); row >= 0; row = part.live.nextSetBit(row + 1)) {
+                counts[segment.getCategoryCode(row)]++;
+            }
+            Map<String, Long> byCategory = new TreeMap<>();
+            for (int code = 0; code < counts.length; code++) {
+                if (counts[code] > 0) {
+                    byCategory.merge(segment.getCategoryDictionary().get(code), counts[code], Long::sum);
+                }
+            }
+            Map<YearMonth, Map<String, Long>> result = new TreeMap<>();
+            result.put(part.month, byCategory);
+            return result;
+        }, (a, b) -> {
+            for (Map.Entry<YearMonth, Map<String, Long>> entry : b.entrySet()) {
+                Map<String, Long> target = a.computeIfAbsent(entry.getKey(), k -> new TreeMap<>());
+                entry.getValue().forEach((category, count) -> target.merge(category, count, Long::sum));
+            }
+            return a;
+        }, new TreeMap<>());
+    }
+
+    // Mean days between borrow and return over all returned loans, 0 if there are none
+    public double getAverageLoanDurationDays() {
+        long[] totals = scan(part -> {
+            TransactionSegment segment = part.segment;
+            long days = 0;
+            long loans = 0;
+            for (int row = part.live.nextSetBit(0); row >= 0; row = part.live.nextSetBit(row + 1)) {
+                int returnDay = segment.getReturnDay(row);
+                if (returnDay != TransactionSegment.NO_DATE) {
+                    days += returnDay - segment.getBorrowDay(row);
+                    loans++;
+                }
+            }
+            return new long[] { days, loans };
+        }, (a, b) -> new long[] { a[0] + b[0], a[1] + b[1] }, new long[] { 0, 0 });
+        return totals[1] > 0 ? (double) totals[0] / totals[1] : 0.0;
+    }
+
+    /**
+     * Share of loans per membership type that were returned late or are still out past
+     * their due date as of {@code asOf}, 0.0 - 1.0.
+     */
+    public Map<String, Double> getOverdueRateByMembershipType(LocalDate asOf) {
+        int asOfDay = (int) asOf.toEpochDay();
+        Map<String, long[]> totals = scan(part -> {
+            TransactionSegment segment = part.segment;
+            int types = segment.getMembershipDictionary().size();
+            long[] overdue = new long[types];
+            long[] loans = new long[types];
+            for (int row = part.live.nextSetBit(0); row >= 0; row = part.live.nextSetBit(row + 1)) {
+                int type = segment.getMembershipCode(row);
+                int returnDay = segment.getReturnDay(row);
+                int endDay = returnDay != TransactionSegment.NO_DATE ? returnDay : asOfDay;
+                loans[type]++;
+                if (endDay > segment.getDueDay(row)) {
+                    overdue[type]++;
+                }
+            }
+            Map<String, long[]> result = new HashMap<>();
+            for (int type = 0; type < types; type++) {
+                result.merge(segment.getMembershipDictionary().get(type),
+                        new long[] { overdue[type], loans[type] }, HistoryQueryEngine::addPairs);
+            }
+            return result;
+        }, (a, b) -> {
+            b.forEach((type, counts) -> a.merge(type, counts, HistoryQueryEngine::addPairs));
+            return a;
+        }, new HashMap<>());
+
+        Map<String, Double> rates = new TreeMap<>();
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            long[] counts = entry.getValue();
+            rates.put(entry.getKey(), counts[1] > 0 ? (double) counts[0] / counts[1] : 0.0);
+        }
+        return rates;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // ==================== Helpers ====================
+
+    // Maps every segment to a partial result in parallel and folds the partials together
+    private <R> R scan(Function<Part, R> partial, BinaryOperator<R> combine, R empty) {
+        List<Part> snapshot = parts;
+        try {
+            return pool.submit(() -> snapshot.parallelStream()
+                    .map(partial)
+                    .reduce(combine)
+                    .orElse(empty)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("History query interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("History query failed", e.getCause());
+        }
+    }
+
+    /**
+     * Reads one month's committed segments, newest run first, so the first copy seen of a
+     * transaction is its latest and older copies are masked out.
+     */
+    private static List<Part> loadMonth(File monthDir, int lastRun) {
+        File[] files = monthDir.listFiles((dir, name) -> name.endsWith(ColumnarFormat.SEGMENT_SUFFIX));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(files, (a, b) -> b.getName().compareTo(a.getName()));
+
+        YearMonth month = YearMonth.parse(monthDir.getName());
+        Set<Integer> seen = new HashSet<>();
+        List<Part> monthParts = new ArrayList<>();
+        for (File file : files) {
+            if (TransactionExporter.runOf(file) > lastRun) {
+                continue; // not yet committed to the manifest
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(new FileInputStream(file), 1 << 16)))) {
+                TransactionSegment segment = TransactionSegment.read(in);
+                BitSet live = new BitSet(segment.size());
+                for (int row = 0; row < segment.size(); row++) {
+                    if (seen.add(segment.getTransactionId(row))) {
+                        live.set(row);
+                    }
+                }
+                monthParts.add(new Part(month, segment, live));
+            } catch (IOException e) {
+                throw new UncheckedIOException(file.getPath() + ": " + e.getMessage(), e);
+            }
+        }
+        return monthParts;
+    }
+
+    private static long[] addPairs(long[] a, long[] b) {
+        return new long[] { a[0] + b[0], a[1] + b[1] };
+    }
+}
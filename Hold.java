@@ -0,0 +1,103 @@
+package com.library.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+public class Hold {
+
+    public enum HoldStatus {
+        WAITING, READY, FULFILLED, EXPIRED, CANCELLED
+    }
+
+    private int holdId;
+    private int bookId;
+    private int userId;
+    private LocalDateTime requestDate;
+    private LocalDate expiryDate;
+    private HoldStatus status;
+
+    // Additional fields for display purposes
+    private String bookTitle;
+    private String userName;
+
+    // Constructors
+    public Hold() {
+    }
+
+    public Hold(int bookId, int userId, HoldStatus status) {
+        this.bookId = bookId;
+        this.userId = userId;
+        this.status = status;
+    }
+
+    // Getters and Setters
+    public int getHoldId() {
+        return holdId;
+    }
+
+    public void setHoldId(int holdId) {
+        this.holdId = holdId;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(int bookId) {
+        this.bookId = bookId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public LocalDateTime getRequestDate() {
+        return requestDate;
+    }
+
+    public void setRequestDate(LocalDateTime requestDate) {
+        this.requestDate = requestDate;
+    }
+
+    public LocalDate getExpiryDate() {
+        return expiryDate;
+    }
+
+    public void setExpiryDate(LocalDate expiryDate) {
+        this.expiryDate = expiryDate;
+    }
+
+    public HoldStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(HoldStatus status) {
+        this.status = status;
+    }
+
+    public String getBookTitle() {
+        return bookTitle;
+    }
+
+    public void setBookTitle(String bookTitle) {
+        this.bookTitle = bookTitle;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Hold[ID=%d, Book='%s', User='%s', Requested=%s, Expires=%s, Status=%s]",
+                holdId, bookTitle, userName, requestDate, expiryDate, status);
+    }
+}
@@ -0,0 +1,313 @@
+package com.library.dao;
+
+import com.library.model.Hold;
+import com.library.util.DatabaseConnection;
+import com.library.util.ResilientExecutor;
+import com.library.util.SqlUtils;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class HoldDAO {
+
+    private final ResilientExecutor resilience = ResilientExecutor.get();
+
+    public boolean createHold(Hold hold) {
+        String sql = "INSERT INTO holds (book_id, user_id, status) VALUES (?, ?, ?)";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            pstmt.setInt(1, hold.getBookId());
+            pstmt.setInt(2, hold.getUserId());
+            pstmt.setString(3, hold.getStatus().name());
+
+            int affectedRows = pstmt.executeUpdate();
+
+            if (affectedRows > 0) {
+                try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        hold.setHoldId(generatedKeys.getInt(1));
+                    }
+                }
+                System.out.println("Hold placed successfully!");
+                return true;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error creating hold: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    public Hold getHoldById(int holdId) {
+        String sql = "SELECT h.*, b.title as book_title, u.name as user_name " +
+                "FROM holds h " +
+                "JOIN books b ON h.book_id = b.book_id " +
+                "JOIN users u ON h.user_id = u.user_id " +
+                "WHERE h.hold_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, holdId);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return extractHoldFromResultSet(rs);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving hold: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    public List<Hold> getHoldsByUserId(int userId) {
+        List<Hold> holds = new ArrayList<>();
+        String sql = "SELECT h.*, b.title as book_title, u.name as user_name " +
+                "FROM holds h " +
+                "JOIN books b ON h.book_id = b.book_id " +
+                "JOIN users u ON h.user_id = u.user_id " +
+                "WHERE h.user_id = ? AND h.status IN ('WAITING', 'READY') " +
+                "ORDER BY h.hold_id";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                holds.add(extractHoldFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving holds by user: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return holds;
+    }
+
+    public boolean hasWaitingHolds(int bookId) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM holds WHERE book_id = ? AND status = 'WAITING')";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, bookId);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return rs.getBoolean(1);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error checking waiting holds: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    public List<Hold> getExpiredReadyHolds(LocalDate today) {
+        List<Hold> holds = new ArrayList<>();
+        String sql = "SELECT h.*, b.title as book_title, u.name as user_name " +
+                "FROM holds h " +
+                "JOIN books b ON h.book_id = b.book_id " +
+                "JOIN users u ON h.user_id = u.user_id " +
+                "WHERE h.status = 'READY' AND h.expiry_date < ? ORDER BY h.hold_id";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setDate(1, Date.valueOf(today));
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                holds.add(extractHoldFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving expired holds: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return holds;
+    }
+
+    public Hold getReadyHold(int userId, int bookId) {
+        String sql = "SELECT h.*, b.title as book_title, u.name as user_name " +
+                "FROM holds h " +
+                "JOIN books b ON h.book_id = b.book_id " +
+                "JOIN users u ON h.user_id = u.user_id " +
+                "WHERE h.user_id = ? AND h.book_id = ? AND h.status = 'READY'";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, bookId);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return extractHoldFromResultSet(rs);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving ready hold: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    public boolean hasPendingHold(int userId, int bookId) {
+        String sql = "SELECT COUNT(*) as count FROM holds " +
+                "WHERE user_id = ? AND book_id = ? AND status IN ('WAITING', 'READY')";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, bookId);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return rs.getInt("count") > 0;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error checking pending hold: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Moves a hold from one status to another only if it is still in the expected status,
+     * so concurrent cancel/assign/expire attempts cannot both succeed. Returns false if the
+     * hold had already moved on; throws DataAccessException if the update itself fails.
+     */
+    public boolean transitionHold(int holdId, Hold.HoldStatus from, Hold.HoldStatus to, LocalDate expiryDate) {
+        // Safe to retry, as a repeated update finds the hold already moved on
+        return resilience.execute("update hold " + holdId, () -> {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                return transitionHold(conn, holdId, from, to, expiryDate);
+            }
+        });
+    }
+
+    // ==================== Bulk operations (caller owns the DB transaction) ====================
+
+    public boolean transitionHold(Connection conn, int holdId, Hold.HoldStatus from, Hold.HoldStatus to,
+            LocalDate expiryDate) throws SQLException {
+        String sql = "UPDATE holds SET status = ?, expiry_date = ? WHERE hold_id = ? AND status = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, to.name());
+            pstmt.setDate(2, expiryDate != null ? Date.valueOf(expiryDate) : null);
+            pstmt.setInt(3, holdId);
+            pstmt.setString(4, from.name());
+
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    // WAITING hold ids of each book in queue order, locked until the caller commits
+    public Map<Integer, List<Integer>> lockWaitingHolds(Connection conn, Collection<Integer> bookIds)
+            throws SQLException {
+        Map<Integer, List<Integer>> holdIds = new LinkedHashMap<>();
+        if (bookIds.isEmpty()) {
+            return holdIds;
+        }
+        String sql = "SELECT hold_id, book_id FROM holds WHERE status = 'WAITING' " +
+                "AND book_id IN (" + SqlUtils.placeholders(bookIds.size()) + ") ORDER BY hold_id FOR UPDATE";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (int bookId : bookIds) {
+                pstmt.setInt(index++, bookId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    holdIds.computeIfAbsent(rs.getInt("book_id"), id -> new ArrayList<>()).add(rs.getInt("hold_id"));
+                }
+            }
+        }
+        return holdIds;
+    }
+
+    public void readyHolds(Connection conn, Collection<Integer> holdIds, LocalDate expiryDate) throws SQLException {
+        String sql = "UPDATE holds SET status = 'READY', expiry_date = ? WHERE hold_id = ? AND status = 'WAITING'";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int holdId : holdIds) {
+                pstmt.setDate(1, Date.valueOf(expiryDate));
+                pstmt.setInt(2, holdId);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    // READY hold ids of the user keyed by book id, locked until the caller commits
+    public Map<Integer, Integer> lockReadyHolds(Connection conn, int userId, Collection<Integer> bookIds)
+            throws SQLException {
+        Map<Integer, Integer> holdIds = new HashMap<>();
+        if (bookIds.isEmpty()) {
+            return holdIds;
+        }
+        String sql = "SELECT hold_id, book_id FROM holds WHERE user_id = ? AND status = 'READY' " +
+                "AND book_id IN (" + SqlUtils.placeholders(bookIds.size()) + ") FOR UPDATE";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            pstmt.setInt(index++, userId);
+            for (int bookId : bookIds) {
+                pstmt.setInt(index++, bookId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    holdIds.put(rs.getInt("book_id"), rs.getInt("hold_id"));
+                }
+            }
+        }
+        return holdIds;
+    }
+
+    public void fulfillHolds(Connection conn, Collection<Integer> holdIds) throws SQLException {
+        String sql = "UPDATE holds SET status = 'FULFILLED' WHERE hold_id = ? AND status = 'READY'";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int holdId : holdIds) {
+                pstmt.setInt(1, holdId);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private Hold extractHoldFromResultSet(ResultSet rs) throws SQLException {
+        Hold hold = new Hold();
+        hold.setHoldId(rs.getInt("hold_id"));
+        hold.setBookId(rs.getInt("book_id"));
+        hold.setUserId(rs.getInt("user_id"));
+
+        Timestamp requestDate = rs.getTimestamp("request_date");
+        if (requestDate != null) {
+            hold.setRequestDate(requestDate.toLocalDateTime());
+        }
+
+        Date expiryDate = rs.getDate("expiry_date");
+        if (expiryDate != null) {
+            hold.setExpiryDate(expiryDate.toLocalDate());
+        }
+
+        hold.setStatus(Hold.HoldStatus.valueOf(rs.getString("status")));
+
+        // Additional fields
+        hold.setBookTitle(rs.getString("book_title"));
+        hold.setUserName(rs.getString("user_name"));
+
+        return hold;
+    }
+}
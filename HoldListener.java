@@ -0,0 +1,14 @@
+package com.library.service;
+
+import com.library.model.Hold;
+
+/**
+ * Receives hold notifications from the hold dispatcher thread.
+ * Implementations must not block, they run on the dispatcher.
+ */
+public interface HoldListener {
+
+    void onHoldReady(Hold hold);
+
+    void onHoldExpired(Hold hold);
+}
@@ -0,0 +1,196 @@
+package com.library.service;
+
+import com.library.dao.BookDAO;
+import com.library.dao.HoldDAO;
+import com.library.events.ChangeEventBus;
+import com.library.model.Hold;
+import com.library.util.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-book FIFO hold queues, kept in the holds table in hold_id order. A freed copy of a
+ * held title goes to the next waiting patron inside the transaction that frees it, so a
+ * crash or restart cannot lose it. Patrons are notified afterwards by a single background
+ * dispatcher thread, so the return itself never waits on the listeners.
+ */
+public class HoldQueueManager {
+
+    private static final int HOLD_PICKUP_DAYS = 3;
+    private static final long EXPIRY_SWEEP_MINUTES = 60;
+
+    private final HoldDAO holdDAO;
+    private final BookDAO bookDAO;
+
+    private final BlockingQueue<Integer> readyHolds = new LinkedBlockingQueue<>();
+    private final List<HoldListener> listeners = new CopyOnWriteArrayList<>();
+
+    private Thread dispatcher;
+    private ScheduledExecutorService expiryScheduler;
+    private volatile boolean running;
+
+    public HoldQueueManager(HoldDAO holdDAO, BookDAO bookDAO) {
+        this.holdDAO = holdDAO;
+        this.bookDAO = bookDAO;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+
+        dispatcher = new Thread(this::dispatchLoop, "hold-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+
+        expiryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hold-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        expiryScheduler.scheduleWithFixedDelay(this::expireHolds, 0, EXPIRY_SWEEP_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        expiryScheduler.shutdownNow();
+        dispatcher.interrupt();
+    }
+
+    public void addListener(HoldListener listener) {
+        listeners.add(listener);
+    }
+
+    public boolean hasWaitingHolds(int bookId) {
+        return holdDAO.hasWaitingHolds(bookId);
+    }
+
+    /**
+     * Passes freed copies (count per book id) to the oldest waiting holds on each book and
+     * puts the rest back on the shelf. The caller must hold the books' row locks, has not
+     * counted the copies in available_copies, and owns the transaction. Returns the ids of
+     * the holds made ready, to be handed to {@link #notifyReady} once the caller commits.
+     */
+    public List<Integer> releaseCopies(Connection conn, Map<Integer, Integer> copies) throws SQLException {
+        Map<Integer, List<Integer>> waiting = holdDAO.lockWaitingHolds(conn, copies.keySet());
+        List<Integer> ready = new ArrayList<>();
+        Map<Integer, Integer> shelved = new HashMap<>();
+
+        for (Map.Entry<Integer, Integer> entry : copies.entrySet()) {
+            List<Integer> queue = waiting.getOrDefault(entry.getKey(), Collections.emptyList());
+            int assigned = Math.min(entry.getValue(), queue.size());
+            ready.addAll(queue.subList(0, assigned));
+            shelved.put(entry.getKey(), entry.getValue() - assigned);
+        }
+
+        holdDAO.readyHolds(conn, ready, LocalDate.now().plusDays(HOLD_PICKUP_DAYS));
+        bookDAO.adjustAvailableCopies(conn, shelved);
+        return ready;
+    }
+
+    // Queues pickup notifications for holds made ready by a committed releaseCopies
+    public void notifyReady(Collection<Integer> holdIds) {
+        readyHolds.addAll(holdIds);
+    }
+
+    /**
+     * Cancels a READY hold and passes its copy on in the same transaction. Returns false
+     * if the hold is no longer READY; throws SQLException if the transaction failed.
+     */
+    public boolean cancelReadyHold(Hold hold) throws SQLException {
+        return releaseHold(hold, Hold.HoldStatus.CANCELLED);
+    }
+
+    private boolean releaseHold(Hold hold, Hold.HoldStatus to) throws SQLException {
+        List<Integer> ready;
+
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            // Book first, the same lock order as borrows and returns
+            bookDAO.lockBooks(conn, Collections.singleton(hold.getBookId()));
+            if (!holdDAO.transitionHold(conn, hold.getHoldId(), Hold.HoldStatus.READY, to, hold.getExpiryDate())) {
+                conn.rollback();
+                return false;
+            }
+            ready = releaseCopies(conn, Collections.singletonMap(hold.getBookId(), 1));
+            conn.commit();
+            ChangeEventBus.getInstance().publishStaged();
+        } catch (SQLException e) {
+            rollback(conn);
+            throw e;
+        } finally {
+            ChangeEventBus.getInstance().discardStaged();
+            DatabaseConnection.closeConnection(conn);
+        }
+
+        hold.setStatus(to);
+        notifyReady(ready);
+        return true;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                int holdId = readyHolds.take();
+                Hold hold = holdDAO.getHoldById(holdId);
+                if (hold != null) {
+                    for (HoldListener listener : listeners) {
+                        listener.onHoldReady(hold);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Error dispatching hold: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void expireHolds() {
+        try {
+            for (Hold hold : holdDAO.getExpiredReadyHolds(LocalDate.now())) {
+                if (releaseHold(hold, Hold.HoldStatus.EXPIRED)) {
+                    for (HoldListener listener : listeners) {
+                        listener.onHoldExpired(hold);
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Error expiring holds: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                System.err.println("Error rolling back transaction: " + e.getMessage());
+            }
+        }
+    }
+}
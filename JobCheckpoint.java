@@ -0,0 +1,61 @@
+package com.library.model;
+
+import java.time.LocalDate;
+
+public class JobCheckpoint {
+
+    private String jobName;
+    private LocalDate runDate;
+    private int lastId;
+    private boolean completed;
+
+    // Constructors
+    public JobCheckpoint() {
+    }
+
+    public JobCheckpoint(String jobName, LocalDate runDate, int lastId, boolean completed) {
+        this.jobName = jobName;
+        this.runDate = runDate;
+        this.lastId = lastId;
+        this.completed = completed;
+    }
+
+    // Getters and Setters
+    public String getJobName() {
+        return jobName;
+    }
+
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public LocalDate getRunDate() {
+        return runDate;
+    }
+
+    public void setRunDate(LocalDate runDate) {
+        this.runDate = runDate;
+    }
+
+    public int getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(int lastId) {
+        this.lastId = lastId;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JobCheckpoint[Job=%s, RunDate=%s, LastID=%d, Completed=%s]",
+                jobName, runDate, lastId, completed);
+    }
+}
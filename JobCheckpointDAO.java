@@ -0,0 +1,48 @@
+package com.library.dao;
+
+import com.library.model.JobCheckpoint;
+import com.library.util.DatabaseConnection;
+
+import java.sql.*;
+
+public class JobCheckpointDAO {
+
+    public JobCheckpoint getCheckpoint(String jobName) {
+        String sql = "SELECT * FROM job_checkpoints WHERE job_name = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, jobName);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                JobCheckpoint checkpoint = new JobCheckpoint();
+                checkpoint.setJobName(rs.getString("job_name"));
+                checkpoint.setRunDate(rs.getDate("run_date").toLocalDate());
+                checkpoint.setLastId(rs.getInt("last_id"));
+                checkpoint.setCompleted(rs.getBoolean("completed"));
+                return checkpoint;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving job checkpoint: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    // Written inside the caller's DB transaction so progress commits together with the work
+    public void saveCheckpoint(Connection conn, JobCheckpoint checkpoint) throws SQLException {
+        String sql = "INSERT INTO job_checkpoints (job_name, run_date, last_id, completed) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE run_date = VALUES(run_date), last_id = VALUES(last_id), " +
+                "completed = VALUES(completed)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, checkpoint.getJobName());
+            pstmt.setDate(2, Date.valueOf(checkpoint.getRunDate()));
+            pstmt.setInt(3, checkpoint.getLastId());
+            pstmt.setBoolean(4, checkpoint.isCompleted());
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.library.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Application settings from {@code library.properties}. Every key can be overridden by
+ * a system property with a {@code library.} prefix ({@code -Dlibrary.db.url=...}) or an
+ * environment variable named after it ({@code LIBRARY_DB_URL}), which take precedence
+ * in that order. The file is reloaded when it changes; settings are read when used, so
+ * pool limits, timeouts and batch sizes follow the file without a restart.
+ */
+public final class LibraryConfig {
+
+    public static final String DEFAULT_CONFIG_FILE = "library.properties";
+
+    private static final long RELOAD_CHECK_SECONDS = 10;
+
+    private static final LibraryConfig INSTANCE = new LibraryConfig(
+            new File(System.getProperty("library.config.file", DEFAULT_CONFIG_FILE)));
+
+    private final File configFile;
+    private volatile Properties values = new Properties();
+    private volatile long loadedModified;
+    private ScheduledExecutorService watcher;
+
+    private LibraryConfig(File configFile) {
+        this.configFile = configFile;
+        reload();
+    }
+
+    public static LibraryConfig get() {
+        return INSTANCE;
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = System.getProperty("library." + key);
+        if (value == null) {
+            value = System.getenv("LIBRARY_" + key.toUpperCase().replace('.', '_'));
+        }
+        if (value == null) {
+            value = values.getProperty(key);
+        }
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    // All file entries under the prefix, with the prefix removed, plus overrides for those keys
+    public Properties getSection(String prefix) {
+        Properties section = new Properties();
+        for (String key : values.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                section.setProperty(key.substring(prefix.length()), getString(key, ""));
+            }
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("library." + prefix)) {
+                section.setProperty(key.substring(("library." + prefix).length()), System.getProperty(key));
+            }
+        }
+        return section;
+    }
+
+    /**
+     * Re-reads the file. On any error the current settings stay active.
+     */
+    public synchronized boolean reload() {
+        if (!configFile.isFile()) {
+            return false;
+        }
+
+        long modified = configFile.lastModified();
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(configFile)) {
+            props.load(in);
+            values = props;
+            loadedModified = modified;
+            System.out.println("Configuration loaded from " + configFile.getPath());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error loading configuration, keeping previous settings: " + e.getMessage());
+            loadedModified = modified;
+        }
+        return false;
+    }
+
+    public synchronized void startWatching() {
+        if (watcher != null) {
+            return;
+        }
+        watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "config-watcher");
+            t.setDaemon(true);
+            return t;
+        });
+        watcher.scheduleWithFixedDelay(() -> {
+            if (configFile.isFile() && configFile.lastModified() != loadedModified) {
+                reload();
+            }
+        }, RELOAD_CHECK_SECONDS, RELOAD_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+    }
+}
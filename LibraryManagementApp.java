@@ -1,15 +1,32 @@
 package com.library;
 
+import com.library.analytics.HistoryQueryEngine;
+import com.library.audit.AuditRecord;
 import com.library.model.Book;
+import com.library.model.Hold;
 import com.library.model.Transaction;
 import com.library.model.User;
+import com.library.service.AdmissionController;
+import com.library.service.BulkResult;
+import com.library.service.CirculationStats;
+import com.library.service.HoldListener;
 import com.library.service.LibraryService;
+import com.library.service.PopularTitlesTracker;
+import com.library.service.TitleCount;
+import com.library.util.DataAccessException;
 import com.library.util.DatabaseConnection;
+import com.library.util.QueryTimeouts;
+import com.library.util.ResilientExecutor;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 @SuppressWarnings("unused")
@@ -18,6 +35,7 @@ public class LibraryManagementApp {
     private static final LibraryService libraryService = new LibraryService();
     private static final Scanner scanner = new Scanner(System.in);
     private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final int REPORT_PAGE_SIZE = 20;
 
     public static void main(String[] args) {
         System.out.println("╔═══════════════════════════════════════════════════╗");
@@ -35,34 +53,57 @@ public class LibraryManagementApp {
 
         System.out.println("✓ Database connection successful!\n");
 
+        libraryService.addHoldListener(new HoldListener() {
+            @Override
+            public void onHoldReady(Hold hold) {
+                System.out.println("\n[Notification] Hold #" + hold.getHoldId() + " is ready for pickup: '"
+                        + hold.getBookTitle() + "' for " + hold.getUserName() + " until " + hold.getExpiryDate());
+            }
+
+            @Override
+            public void onHoldExpired(Hold hold) {
+                System.out.println("\n[Notification] Hold #" + hold.getHoldId() + " expired: '"
+                        + hold.getBookTitle() + "' for " + hold.getUserName());
+            }
+        });
+        libraryService.start();
+
         boolean running = true;
 
         while (running) {
             displayMainMenu();
             int choice = getIntInput("Enter your choice: ");
 
-            switch (choice) {
-                case 1:
-                    bookManagementMenu();
-                    break;
-                case 2:
-                    userManagementMenu();
-                    break;
-                case 3:
-                    transactionManagementMenu();
-                    break;
-                case 4:
-                    viewReportsMenu();
-                    break;
-                case 0:
-                    running = false;
-                    System.out.println("\n✓ Thank you for using Library Management System!");
-                    break;
-                default:
-                    System.out.println("✗ Invalid choice! Please try again.\n");
+            try {
+                switch (choice) {
+                    case 1:
+                        bookManagementMenu();
+                        break;
+                    case 2:
+                        userManagementMenu();
+                        break;
+                    case 3:
+                        transactionManagementMenu();
+                        break;
+                    case 4:
+                        viewReportsMenu();
+                        break;
+                    case 0:
+                        running = false;
+                        System.out.println("\n✓ Thank you for using Library Management System!");
+                        break;
+                    default:
+                        System.out.println("✗ Invalid choice! Please try again.\n");
+                }
+            } catch (DataAccessException e) {
+                System.err.println(e.getMessage());
+                System.out.println(e.isTransient()
+                        ? "✗ The database is not responding right now. Please try again shortly.\n"
+                        : "✗ The request failed because of a database error.\n");
             }
         }
 
+        libraryService.shutdown();
         scanner.close();
     }
 
@@ -95,6 +136,7 @@ public class LibraryManagementApp {
             System.out.println("│  4. Search Book by Author                       │");
             System.out.println("│  5. Update Book                                 │");
             System.out.println("│  6. Delete Book                                 │");
+            System.out.println("│  7. Bulk Delete Books                           │");
             System.out.println("│  0. Back to Main Menu                           │");
             System.out.println("└─────────────────────────────────────────────────┘");
 
@@ -119,6 +161,9 @@ public class LibraryManagementApp {
                 case 6:
                     deleteBook();
                     break;
+                case 7:
+                    bulkDeleteBooks();
+                    break;
                 case 0:
                     back = true;
                     break;
@@ -140,6 +185,9 @@ public class LibraryManagementApp {
         int totalCopies = getIntInput("Enter total copies: ");
 
         Book book = new Book(title, author, isbn, publisher, year, category, totalCopies, totalCopies);
+        if (libraryService.isMultiBranch()) {
+            book.setBranchId(getIntInput("Enter branch ID: "));
+        }
 
         if (libraryService.addBook(book)) {
             System.out.println("✓ Book added successfully! (ID: " + book.getBookId() + ")\n");
@@ -257,6 +305,24 @@ public class LibraryManagementApp {
         }
     }
 
+    private static void bulkDeleteBooks() {
+        System.out.println("\n--- Bulk Delete Books ---");
+        List<Integer> bookIds = getIdListInput("Enter Book IDs (comma separated): ");
+
+        if (bookIds.isEmpty()) {
+            System.out.println("✗ No book IDs entered!\n");
+            return;
+        }
+
+        String confirm = getStringInput("Delete " + bookIds.size() + " book(s)? (yes/no): ");
+        if (!confirm.equalsIgnoreCase("yes")) {
+            System.out.println("✗ Delete operation cancelled!\n");
+            return;
+        }
+
+        displayBulkResults(libraryService.deleteBooks(bookIds));
+    }
+
     // ==================== USER MANAGEMENT ====================
 
     private static void userManagementMenu() {
@@ -332,6 +398,9 @@ public class LibraryManagementApp {
         User.Status status = User.Status.ACTIVE;
 
         User user = new User(name, email, phone, address, membershipType, membershipDate, status);
+        if (libraryService.isMultiBranch()) {
+            user.setBranchId(getIntInput("Enter home branch ID: "));
+        }
 
         if (libraryService.addUser(user)) {
             System.out.println("✓ User added successfully! (ID: " + user.getUserId() + ")\n");
@@ -447,6 +516,12 @@ public class LibraryManagementApp {
             System.out.println("│  3. View User's Active Borrowings              │");
             System.out.println("│  4. View User's Transaction History            │");
             System.out.println("│  5. View All Transactions                       │");
+            System.out.println("│  6. Place Hold                                  │");
+            System.out.println("│  7. Cancel Hold                                 │");
+            System.out.println("│  8. View User's Holds                           │");
+            System.out.println("│  9. Bulk Borrow                                 │");
+            System.out.println("│ 10. Bulk Return                                 │");
+            System.out.println("│ 11. Borrow From Another Branch                  │");
             System.out.println("│  0. Back to Main Menu                           │");
             System.out.println("└─────────────────────────────────────────────────┘");
 
@@ -468,6 +543,24 @@ public class LibraryManagementApp {
                 case 5:
                     viewAllTransactions();
                     break;
+                case 6:
+                    placeHold();
+                    break;
+                case 7:
+                    cancelHold();
+                    break;
+                case 8:
+                    viewUserHolds();
+                    break;
+                case 9:
+                    bulkBorrowBooks();
+                    break;
+                case 10:
+                    bulkReturnBooks();
+                    break;
+                case 11:
+                    borrowFromOtherBranch();
+                    break;
                 case 0:
                     back = true;
                     break;
@@ -489,6 +582,24 @@ public class LibraryManagementApp {
         }
     }
 
+    private static void borrowFromOtherBranch() {
+        System.out.println("\n--- Borrow From Another Branch ---");
+        if (!libraryService.isMultiBranch()) {
+            System.out.println("✗ All branches share one database; use Borrow Book instead.\n");
+            return;
+        }
+        int userId = getIntInput("Enter User ID: ");
+        int sourceBranchId = getIntInput("Enter branch ID holding the book: ");
+        int bookId = getIntInput("Enter Book ID (at that branch): ");
+
+        Transaction loan = libraryService.transferAndBorrow(userId, sourceBranchId, bookId);
+        if (loan != null) {
+            System.out.println("✓ Book transferred and borrowed! (Transaction ID: " + loan.getTransactionId() + ")\n");
+        } else {
+            System.out.println("✗ Failed to borrow book from the other branch!\n");
+        }
+    }
+
     private static void returnBook() {
         System.out.println("\n--- Return Book ---");
         int transactionId = getIntInput("Enter Transaction ID: ");
@@ -515,7 +626,8 @@ public class LibraryManagementApp {
 
     private static void viewUserTransactionHistory() {
         int userId = getIntInput("\nEnter User ID: ");
-        List<Transaction> transactions = libraryService.getUserTransactions(userId);
+        boolean includeArchived = getStringInput("Include archived history? (y/n): ").equalsIgnoreCase("y");
+        List<Transaction> transactions = libraryService.getUserTransactions(userId, includeArchived);
 
         if (transactions.isEmpty()) {
             System.out.println("✗ No transactions found!\n");
@@ -525,7 +637,7 @@ public class LibraryManagementApp {
         System.out.println("\n--- Transaction History ---");
         displayTransactionList(transactions);
 
-        double totalFines = libraryService.getUserTotalFines(userId);
+        BigDecimal totalFines = libraryService.getUserTotalFines(userId);
         System.out.println("Total Fines: Rs. " + totalFines + "\n");
     }
 
@@ -541,6 +653,69 @@ public class LibraryManagementApp {
         displayTransactionList(transactions);
     }
 
+    private static void placeHold() {
+        System.out.println("\n--- Place Hold ---");
+        int userId = getIntInput("Enter User ID: ");
+        int bookId = getIntInput("Enter Book ID: ");
+
+        if (libraryService.placeHold(userId, bookId)) {
+            System.out.println("✓ Hold placed! You will be notified when a copy is ready.\n");
+        } else {
+            System.out.println("✗ Failed to place hold!\n");
+        }
+    }
+
+    private static void cancelHold() {
+        int holdId = getIntInput("\nEnter Hold ID to cancel: ");
+
+        if (libraryService.cancelHold(holdId)) {
+            System.out.println("✓ Hold cancelled successfully!\n");
+        } else {
+            System.out.println("✗ Failed to cancel hold!\n");
+        }
+    }
+
+    private static void viewUserHolds() {
+        int userId = getIntInput("\nEnter User ID: ");
+        List<Hold> holds = libraryService.getUserHolds(userId);
+
+        if (holds.isEmpty()) {
+            System.out.println("✗ No active holds found!\n");
+            return;
+        }
+
+        System.out.println("\n--- Holds ---");
+        for (Hold hold : holds) {
+            System.out.println(hold);
+        }
+        System.out.println();
+    }
+
+    private static void bulkBorrowBooks() {
+        System.out.println("\n--- Bulk Borrow ---");
+        int userId = getIntInput("Enter User ID: ");
+        List<Integer> bookIds = getIdListInput("Enter Book IDs (comma separated): ");
+
+        if (bookIds.isEmpty()) {
+            System.out.println("✗ No book IDs entered!\n");
+            return;
+        }
+
+        displayBulkResults(libraryService.borrowBooks(userId, bookIds));
+    }
+
+    private static void bulkReturnBooks() {
+        System.out.println("\n--- Bulk Return ---");
+        List<Integer> transactionIds = getIdListInput("Enter Transaction IDs (comma separated): ");
+
+        if (transactionIds.isEmpty()) {
+            System.out.println("✗ No transaction IDs entered!\n");
+            return;
+        }
+
+        displayBulkResults(libraryService.returnBooks(transactionIds));
+    }
+
     // ==================== REPORTS ====================
 
     private static void viewReportsMenu() {
@@ -553,6 +728,12 @@ public class LibraryManagementApp {
             System.out.println("│  1. View Overdue Books                          │");
             System.out.println("│  2. View Available Books                        │");
             System.out.println("│  3. View Active Users                           │");
+            System.out.println("│  4. Run Overdue Fine Accrual                    │");
+            System.out.println("│  5. Circulation Dashboard                       │");
+            System.out.println("│  6. Export Transaction History                  │");
+            System.out.println("│  7. History Analytics (from export)             │");
+            System.out.println("│  8. Archive Old Transactions                    │");
+            System.out.println("│  9. View Audit Trail                            │");
             System.out.println("│  0. Back to Main Menu                           │");
             System.out.println("└─────────────────────────────────────────────────┘");
 
@@ -568,6 +749,24 @@ public class LibraryManagementApp {
                 case 3:
                     viewActiveUsers();
                     break;
+                case 4:
+                    runOverdueAccrual();
+                    break;
+                case 5:
+                    viewCirculationDashboard();
+                    break;
+                case 6:
+                    exportTransactionHistory();
+                    break;
+                case 7:
+                    viewHistoryAnalytics();
+                    break;
+                case 8:
+                    archiveOldTransactions();
+                    break;
+                case 9:
+                    viewAuditTrail();
+                    break;
                 case 0:
                     back = true;
                     break;
@@ -591,44 +790,77 @@ public class LibraryManagementApp {
 
     private static void viewAvailableBooks() {
         System.out.println("\n--- Available Books ---");
-        List<Book> books = libraryService.getAllBooks();
-
-        List<Book> availableBooks = new java.util.ArrayList<>();
-        for (Book book : books) {
-            if (book.getAvailableCopies() > 0) {
-                availableBooks.add(book);
-            }
+        String category = getStringInput("Enter category (blank for all): ");
+        if (category.isEmpty()) {
+            category = null;
         }
 
-        if (availableBooks.isEmpty()) {
+        List<Book> page = libraryService.getAvailableBooks(category, null, REPORT_PAGE_SIZE);
+        if (page.isEmpty()) {
             System.out.println("No available books!\n");
             return;
         }
 
-        displayBookList(availableBooks);
+        while (true) {
+            displayBookList(page);
+            if (page.size() < REPORT_PAGE_SIZE || !confirmNextPage()) {
+                return;
+            }
+            page = libraryService.getAvailableBooks(category, page.get(page.size() - 1), REPORT_PAGE_SIZE);
+            if (page.isEmpty()) {
+                return;
+            }
+        }
     }
 
     private static void viewActiveUsers() {
         System.out.println("\n--- Active Users ---");
-        List<User> users = libraryService.getAllUsers();
-
-        List<User> activeUsers = new java.util.ArrayList<>();
-        for (User user : users) {
-            if (user.getStatus() == User.Status.ACTIVE) {
-                activeUsers.add(user);
-            }
+        System.out.println("Membership Type: 0=ALL, 1=STUDENT, 2=FACULTY, 3=PUBLIC");
+        int typeChoice = getIntInput("Enter membership type: ");
+        User.MembershipType membershipType;
+        switch (typeChoice) {
+            case 1:
+                membershipType = User.MembershipType.STUDENT;
+                break;
+            case 2:
+                membershipType = User.MembershipType.FACULTY;
+                break;
+            case 3:
+                membershipType = User.MembershipType.PUBLIC;
+                break;
+            default:
+                membershipType = null;
+                break;
         }
 
-        if (activeUsers.isEmpty()) {
+        List<User> page = libraryService.getActiveUsers(membershipType, null, REPORT_PAGE_SIZE);
+        if (page.isEmpty()) {
             System.out.println("No active users!\n");
             return;
         }
 
+        while (true) {
+            displayActiveUserList(page);
+            if (page.size() < REPORT_PAGE_SIZE || !confirmNextPage()) {
+                return;
+            }
+            page = libraryService.getActiveUsers(membershipType, page.get(page.size() - 1), REPORT_PAGE_SIZE);
+            if (page.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private static boolean confirmNextPage() {
+        return getStringInput("Show next page? (y/n): ").equalsIgnoreCase("y");
+    }
+
+    private static void displayActiveUserList(List<User> users) {
         System.out.println("─────────────────────────────────────────────────────────────────────────────────");
         System.out.printf("%-5s %-25s %-25s %-15s%n", "ID", "Name", "Email", "Type");
         System.out.println("─────────────────────────────────────────────────────────────────────────────────");
 
-        for (User user : activeUsers) {
+        for (User user : users) {
             System.out.printf("%-5d %-25s %-25s %-15s%n",
                     user.getUserId(),
                     truncate(user.getName(), 25),
@@ -638,6 +870,154 @@ public class LibraryManagementApp {
         System.out.println("─────────────────────────────────────────────────────────────────────────────────\n");
     }
 
+    private static void runOverdueAccrual() {
+        System.out.println("\n--- Overdue Fine Accrual ---");
+        int updated = libraryService.runOverdueAccrual();
+
+        if (updated >= 0) {
+            System.out.println("✓ Accrual complete! " + updated + " loan(s) updated.\n");
+        } else {
+            System.out.println("✗ Accrual failed! Run it again to resume.\n");
+        }
+    }
+
+    private static void exportTransactionHistory() {
+        System.out.println("\n--- Export Transaction History ---");
+        int exported = libraryService.exportTransactionHistory();
+
+        if (exported >= 0) {
+            System.out.println("✓ Export complete! " + exported + " changed transaction(s) written.\n");
+        } else {
+            System.out.println("✗ Export failed! The next run will pick up the same changes.\n");
+        }
+    }
+
+    private static void archiveOldTransactions() {
+        System.out.println("\n--- Archive Old Transactions ---");
+        System.out.println("Moves transactions returned more than " + libraryService.getArchiveRetentionMonths()
+                + " months ago to the archive.");
+        int archived = libraryService.archiveOldTransactions();
+
+        if (archived >= 0) {
+            System.out.println("✓ Archival complete! " + archived + " transaction(s) archived.\n");
+        } else {
+            System.out.println("✗ Archival failed! Run it again to continue.\n");
+        }
+    }
+
+    private static void viewHistoryAnalytics() {
+        System.out.println("\n--- History Analytics ---");
+        HistoryQueryEngine history = libraryService.getHistoryAnalytics();
+
+        if (history.getRowCount() == 0) {
+            System.out.println("No exported history! Run Export Transaction History first.\n");
+            return;
+        }
+
+        System.out.println("Exported transactions: " + history.getRowCount());
+        System.out.printf("Average loan duration: %.1f days%n", history.getAverageLoanDurationDays());
+
+        System.out.println("\nOverdue rate by membership type:");
+        for (Map.Entry<String, Double> entry : history.getOverdueRateByMembershipType(LocalDate.now()).entrySet()) {
+            System.out.printf("  %-10s %.1f%%%n", entry.getKey(), entry.getValue() * 100);
+        }
+
+        System.out.println("\nLoans by month and category:");
+        for (Map.Entry<YearMonth, Map<String, Long>> month : history.getLoansByMonthAndCategory().entrySet()) {
+            System.out.println("  " + month.getKey());
+            for (Map.Entry<String, Long> entry : month.getValue().entrySet()) {
+                System.out.printf("    %-20s %d%n", truncate(entry.getKey(), 20), entry.getValue());
+            }
+        }
+        System.out.println();
+    }
+
+    private static void viewAuditTrail() {
+        System.out.println("\n--- Audit Trail ---");
+        int userId = getIntInput("Enter User ID (0 for all users): ");
+        int bookId = getIntInput("Enter Book ID (0 for all books): ");
+        int days = getIntInput("Show the last how many days? (0 for all): ");
+
+        List<AuditRecord> records = libraryService.getAuditTrail(userId > 0 ? userId : null,
+                bookId > 0 ? bookId : null, days > 0 ? LocalDateTime.now().minusDays(days) : null, null);
+
+        if (records.isEmpty()) {
+            System.out.println("No audit records found!\n");
+            return;
+        }
+        for (AuditRecord record : records) {
+            System.out.println("  " + record);
+        }
+        System.out.println("\n" + records.size() + " record(s).\n");
+    }
+
+    private static void viewCirculationDashboard() {
+        System.out.println("\n--- Circulation Dashboard ---");
+        CirculationStats stats = libraryService.getCirculationStats();
+
+        System.out.printf("Total loans: %d   Today: %d%n", stats.getTotalLoans(), stats.getLoansToday());
+        System.out.printf("Loans    - last hour: %d, last day: %d, last week: %d%n",
+                stats.getLoansLastHour(), stats.getLoansLastDay(), stats.getLoansLastWeek());
+        System.out.printf("Returns  - last hour: %d, last day: %d, last week: %d%n",
+                stats.getReturnsLastHour(), stats.getReturnsLastDay(), stats.getReturnsLastWeek());
+        System.out.printf("Utilization: %.1f%% (%d of %d copies on loan)%n",
+                stats.getUtilization() * 100, stats.getCopiesOnLoan(), stats.getTotalCopies());
+
+        System.out.println("\nLoans by membership type:");
+        for (User.MembershipType type : User.MembershipType.values()) {
+            System.out.printf("  %-10s %d%n", type, stats.getLoansByMembershipType(type));
+        }
+
+        System.out.println("\nLoans by category:");
+        for (Map.Entry<String, Long> entry : stats.getLoansByCategory().entrySet()) {
+            System.out.printf("  %-20s %d%n", truncate(entry.getKey(), 20), entry.getValue());
+        }
+
+        System.out.println("\nLoans per day (last 30 days):");
+        for (Map.Entry<LocalDate, Long> entry : stats.getLoansPerDay().entrySet()) {
+            System.out.printf("  %s %d%n", entry.getKey().format(dateFormatter), entry.getValue());
+        }
+
+        PopularTitlesTracker popular = libraryService.getPopularTitles();
+        System.out.println("\nTop borrowed titles (last 7 days):");
+        displayTitleCounts(popular.getTopTitles(7, null, 10));
+
+        System.out.println("\nTop borrowed titles (last 30 days):");
+        displayTitleCounts(popular.getTopTitles(PopularTitlesTracker.DAYS_KEPT, null, 10));
+
+        System.out.println("\nTop titles by category (last 30 days):");
+        for (String category : popular.getCategories()) {
+            System.out.println("  " + category);
+            displayTitleCounts(popular.getTopTitles(PopularTitlesTracker.DAYS_KEPT, category, 3));
+        }
+
+        ResilientExecutor resilience = ResilientExecutor.get();
+        System.out.printf("%nDatabase: %s, %d retries, breaker opened %d time(s), %d call(s) failed fast%n",
+                resilience.getState() == ResilientExecutor.State.CLOSED ? "healthy" : "unavailable",
+                resilience.getRetries(), resilience.getTrips(), resilience.getRejected());
+        System.out.printf("Timeouts: %d quer%s stopped, %d refused after the request ran out of time%n",
+                QueryTimeouts.getQueryTimeouts(), QueryTimeouts.getQueryTimeouts() == 1 ? "y" : "ies",
+                QueryTimeouts.getDeadlinesExceeded());
+
+        System.out.println("\nRequest admission (since startup):");
+        System.out.printf("  %-8s %9s %7s %8s %6s %9s %8s %8s%n", "Op", "Admitted", "Queued", "Limited", "Shed",
+                "TimedOut", "Running", "MaxWait");
+        for (AdmissionController.Stats entry : libraryService.getAdmissionStats()) {
+            System.out.printf("  %-8s %9d %7d %8d %6d %9d %8d %6dms%n", entry.getOperation(), entry.getAdmitted(),
+                    entry.getQueued(), entry.getRateLimited(), entry.getShed(), entry.getTimedOut(),
+                    entry.getRunning(), entry.getMaxQueueWaitMillis());
+        }
+        System.out.println();
+    }
+
+    private static void displayTitleCounts(List<TitleCount> entries) {
+        int rank = 1;
+        for (TitleCount entry : entries) {
+            String title = entry.getTitle() != null ? entry.getTitle() : "Book #" + entry.getBookId();
+            System.out.printf("  %2d. %-30s %d%n", rank++, truncate(title, 30), entry.getCount());
+        }
+    }
+
     // ==================== UTILITY METHODS ====================
 
     private static void displayBookList(List<Book> books) {
@@ -645,16 +1025,27 @@ public class LibraryManagementApp {
         System.out.printf("%-5s %-30s %-25s %-20s %-12s%n", "ID", "Title", "Author", "Category", "Available");
         System.out.println("─────────────────────────────────────────────────────────────────────────────────────");
 
+        boolean otherBranches = false;
         for (Book book : books) {
-            System.out.printf("%-5d %-30s %-25s %-20s %d/%d%n",
-                    book.getBookId(),
+            // Ids from another branch's database are shown as branch/id, as they may clash with ours
+            String id = String.valueOf(book.getBookId());
+            if (libraryService.hasOwnDatabase(book.getBranchId())) {
+                id = book.getBranchId() + "/" + id;
+                otherBranches = true;
+            }
+            System.out.printf("%-5s %-30s %-25s %-20s %d/%d%n",
+                    id,
                     truncate(book.getTitle(), 30),
                     truncate(book.getAuthor(), 25),
                     truncate(book.getCategory(), 20),
                     book.getAvailableCopies(),
                     book.getTotalCopies());
         }
-        System.out.println("─────────────────────────────────────────────────────────────────────────────────────\n");
+        System.out.println("─────────────────────────────────────────────────────────────────────────────────────");
+        if (otherBranches) {
+            System.out.println("Books shown as branch/id are held by another branch; use Borrow From Another Branch.");
+        }
+        System.out.println();
     }
 
     private static void displayTransactionList(List<Transaction> transactions) {
@@ -679,6 +1070,33 @@ public class LibraryManagementApp {
                 "─────────────────────────────────────────────────────────────────────────────────────────────\n");
     }
 
+    private static void displayBulkResults(List<BulkResult> results) {
+        int succeeded = 0;
+        for (BulkResult result : results) {
+            System.out.println((result.isSuccess() ? "✓ " : "✗ ") + result);
+            if (result.isSuccess()) {
+                succeeded++;
+            }
+        }
+        System.out.println(succeeded + "/" + results.size() + " succeeded.\n");
+    }
+
+    private static List<Integer> getIdListInput(String prompt) {
+        while (true) {
+            try {
+                List<Integer> ids = new ArrayList<>();
+                for (String part : getStringInput(prompt).split("[,\\s]+")) {
+                    if (!part.isEmpty()) {
+                        ids.add(Integer.parseInt(part));
+                    }
+                }
+                return ids;
+            } catch (NumberFormatException e) {
+                System.out.println("✗ Invalid input! Please enter numbers separated by commas.");
+            }
+        }
+    }
+
     private static String getStringInput(String prompt) {
         System.out.print(prompt);
         return scanner.nextLine().trim();
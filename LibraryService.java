@@ -1,33 +1,151 @@
 package com.library.service;
 
+import com.library.analytics.HistoryQueryEngine;
+import com.library.analytics.TransactionExporter;
+import com.library.audit.AuditLog;
+import com.library.audit.AuditLogReader;
+import com.library.audit.AuditRecord;
 import com.library.dao.BookDAO;
+import com.library.dao.FineLedgerDAO;
+import com.library.dao.HoldDAO;
+import com.library.dao.JobCheckpointDAO;
+import com.library.dao.PartitionMaintenanceDAO;
+import com.library.dao.StatisticsDAO;
 import com.library.dao.TransactionDAO;
+import com.library.dao.TransferLogDAO;
 import com.library.dao.UserDAO;
+import com.library.events.ChangeEventBus;
 import com.library.model.Book;
+import com.library.model.Hold;
 import com.library.model.Transaction;
 import com.library.model.User;
-
+import com.library.service.AdmissionController.Operation;
+import com.library.util.DataAccessException;
+import com.library.util.DatabaseConnection;
+import com.library.util.LibraryConfig;
+import com.library.util.ResilientExecutor;
+import com.library.util.ShardRouter;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class LibraryService {
 
+    // Books deleted per DB transaction by deleteBooks, unless batch.delete.chunk.size is set
+    private static final int DEFAULT_DELETE_CHUNK_SIZE = 500;
+
     private final BookDAO bookDAO;
     private final UserDAO userDAO;
     private final TransactionDAO transactionDAO;
-
-    private static final int MAX_BOOKS_STUDENT = 5;
-    private static final int MAX_BOOKS_FACULTY = 10;
-    private static final int MAX_BOOKS_PUBLIC = 3;
-
-    private static final int BORROW_PERIOD_STUDENT = 14;
-    private static final int BORROW_PERIOD_FACULTY = 30;
-    private static final int BORROW_PERIOD_PUBLIC = 7;
+    private final HoldDAO holdDAO;
+    private final FineLedgerDAO fineLedgerDAO;
+    private final HoldQueueManager holdQueueManager;
+    private final PolicyEngine policyEngine;
+    private final OverdueAccrualJob overdueAccrualJob;
+    private final CirculationStats circulationStats;
+    private final PopularTitlesTracker popularTitles;
+    private final TransactionExporter transactionExporter;
+    private final HistoryQueryEngine historyQueryEngine;
+    private final TransactionArchiver transactionArchiver;
+    private final PartitionMaintenanceJob partitionMaintenanceJob;
+    private final TransferCoordinator transferCoordinator;
+    private final AdmissionController admission = new AdmissionController();
+    private final ResilientExecutor resilience = ResilientExecutor.get();
+    private final ChangeEventBus eventBus = ChangeEventBus.getInstance();
+    private final AuditLog auditLog;
+    private ScheduledExecutorService jobScheduler;
 
     public LibraryService() {
         this.bookDAO = new BookDAO();
         this.userDAO = new UserDAO();
         this.transactionDAO = new TransactionDAO();
+        this.holdDAO = new HoldDAO();
+        this.fineLedgerDAO = new FineLedgerDAO();
+        this.holdQueueManager = new HoldQueueManager(holdDAO, bookDAO);
+        this.policyEngine = new PolicyEngine();
+        this.overdueAccrualJob = new OverdueAccrualJob(transactionDAO, fineLedgerDAO, new JobCheckpointDAO(),
+                policyEngine);
+        StatisticsDAO statisticsDAO = new StatisticsDAO();
+        this.circulationStats = new CirculationStats(statisticsDAO);
+        this.popularTitles = new PopularTitlesTracker(statisticsDAO);
+        this.transactionExporter = new TransactionExporter(transactionDAO);
+        this.historyQueryEngine = new HistoryQueryEngine(transactionExporter.getExportDir());
+        this.transactionArchiver = new TransactionArchiver(transactionDAO);
+        this.partitionMaintenanceJob = new PartitionMaintenanceJob(new PartitionMaintenanceDAO(),
+                transactionArchiver.getRetentionMonths());
+        this.auditLog = new AuditLog();
+        this.transferCoordinator = new TransferCoordinator(bookDAO, userDAO, transactionDAO, new TransferLogDAO(),
+                policyEngine, circulationStats, popularTitles);
+    }
+
+    // Starts background processing; call once the database is reachable
+    public void start() {
+        // A database upgraded from before the fine ledger existed starts with it empty
+        if (fineLedgerDAO.needsRebuild()) {
+            fineLedgerDAO.rebuildLedger();
+        }
+        circulationStats.load();
+        eventBus.subscribe("stats", circulationStats);
+        auditLog.start();
+        eventBus.subscribe("audit", auditLog);
+        popularTitles.load();
+        holdQueueManager.start();
+        policyEngine.startWatching();
+        LibraryConfig.get().startWatching();
+        if (isMultiBranch()) {
+            transferCoordinator.recover();
+        }
+
+        // Overdue accrual, the analytics export, archival and partition maintenance run every
+        // night just after midnight
+        jobScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "nightly-jobs");
+            t.setDaemon(true);
+            return t;
+        });
+        long minutesToMidnight = Duration.between(LocalDateTime.now(),
+                LocalDate.now().plusDays(1).atStartOfDay()).toMinutes() + 1;
+        jobScheduler.scheduleAtFixedRate(this::runNightlyJobs, minutesToMidnight,
+                TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+    }
+
+    public void shutdown() {
+        if (jobScheduler != null) {
+            jobScheduler.shutdownNow();
+        }
+        overdueAccrualJob.shutdown();
+        historyQueryEngine.shutdown();
+        policyEngine.stopWatching();
+        holdQueueManager.shutdown();
+        eventBus.shutdown();
+        auditLog.close();
+        LibraryConfig.get().stopWatching();
+        DatabaseConnection.shutdown();
+    }
+
+    // True when some branches have their own database (see ShardRouter)
+    public boolean isMultiBranch() {
+        return ShardRouter.get().isSharded();
+    }
+
+    // Books of such a branch are only reachable through searches and inter-branch transfers
+    public boolean hasOwnDatabase(int branchId) {
+        return ShardRouter.get().hasOwnDatabase(branchId);
     }
 
     // ==================== Book Management ====================
@@ -38,6 +156,11 @@ public class LibraryService {
             return false;
         }
 
+        if (ShardRouter.get().hasOwnDatabase(book.getBranchId())) {
+            System.err.println("Branch " + book.getBranchId() + " has its own database; add its books there!");
+            return false;
+        }
+
         Book existingBook = bookDAO.getBookByIsbn(book.getIsbn());
         if (existingBook != null) {
             System.err.println("Book with ISBN " + book.getIsbn() + " already exists!");
@@ -48,15 +171,21 @@ public class LibraryService {
     }
 
     public List<Book> getAllBooks() {
-        return bookDAO.getAllBooks();
+        return admission.call(Operation.BROWSE, Collections.emptyList(), bookDAO::getAllBooks);
+    }
+
+    // Keyset-paginated; category may be null for all categories
+    public List<Book> getAvailableBooks(String category, Book after, int limit) {
+        return admission.call(Operation.BROWSE, Collections.emptyList(),
+                () -> bookDAO.getAvailableBooks(category, after, limit));
     }
 
     public List<Book> searchBooksByTitle(String title) {
-        return bookDAO.searchBooksByTitle(title);
+        return admission.call(Operation.SEARCH, Collections.emptyList(), () -> bookDAO.searchBooksByTitle(title));
     }
 
     public List<Book> searchBooksByAuthor(String author) {
-        return bookDAO.searchBooksByAuthor(author);
+        return admission.call(Operation.SEARCH, Collections.emptyList(), () -> bookDAO.searchBooksByAuthor(author));
     }
 
     public Book getBookById(int bookId) {
@@ -72,16 +201,74 @@ public class LibraryService {
     }
 
     public boolean deleteBook(int bookId) {
-        List<Transaction> transactions = transactionDAO.getTransactionsByBookId(bookId);
-        for (Transaction transaction : transactions) {
-            if (transaction.getStatus() != Transaction.TransactionStatus.RETURNED) {
-                System.err.println("Cannot delete book with active borrowings!");
-                return false;
-            }
+        if (transactionDAO.hasActiveBorrowingsForBook(bookId)) {
+            System.err.println("Cannot delete book with active borrowings!");
+            return false;
         }
         return bookDAO.deleteBook(bookId);
     }
 
+    /**
+     * Deletes many books, e.g. for a weeding campaign. Books are locked, checked for
+     * active borrowings and deleted in chunks, one DB transaction per chunk, so a failure
+     * only fails the books of that chunk.
+     */
+    public List<BulkResult> deleteBooks(List<Integer> bookIds) {
+        List<BulkResult> results = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        int deleted = 0;
+        int chunkSize = LibraryConfig.get().getInt("batch.delete.chunk.size", DEFAULT_DELETE_CHUNK_SIZE);
+
+        for (int from = 0; from < bookIds.size(); from += chunkSize) {
+            List<Integer> chunk = bookIds.subList(from, Math.min(from + chunkSize, bookIds.size()));
+            List<BulkResult> chunkResults = new ArrayList<>();
+            List<Book> removed = new ArrayList<>();
+
+            Connection conn = null;
+            try {
+                conn = DatabaseConnection.getConnection();
+                conn.setAutoCommit(false);
+
+                Map<Integer, Book> books = bookDAO.lockBooks(conn, new LinkedHashSet<>(chunk));
+                Set<Integer> active = transactionDAO.getBookIdsWithActiveBorrowings(conn, books.keySet());
+
+                for (int bookId : chunk) {
+                    Book book = books.get(bookId);
+                    if (!seen.add(bookId)) {
+                        chunkResults.add(BulkResult.failed(bookId, "Duplicate book in request"));
+                    } else if (book == null) {
+                        chunkResults.add(BulkResult.failed(bookId, "Book not found"));
+                    } else if (active.contains(bookId)) {
+                        chunkResults.add(BulkResult.failed(bookId, "Book has active borrowings"));
+                    } else {
+                        removed.add(book);
+                        chunkResults.add(BulkResult.ok(bookId, "Deleted " + book.getTitle()));
+                    }
+                }
+
+                bookDAO.deleteBooks(conn, removed);
+                conn.commit();
+                eventBus.publishStaged();
+                deleted += removed.size();
+            } catch (SQLException e) {
+                rollback(conn);
+                System.err.println("Error in bulk delete: " + e.getMessage());
+                e.printStackTrace();
+                chunkResults.clear();
+                for (int bookId : chunk) {
+                    chunkResults.add(BulkResult.failed(bookId, "Bulk delete failed: " + e.getMessage()));
+                }
+            } finally {
+                eventBus.discardStaged();
+                DatabaseConnection.closeConnection(conn);
+            }
+            results.addAll(chunkResults);
+        }
+
+        System.out.println(deleted + " of " + bookIds.size() + " book(s) deleted.");
+        return results;
+    }
+
     // ==================== User Management ====================
 
     public boolean addUser(User user) {
@@ -90,6 +277,11 @@ public class LibraryService {
             return false;
         }
 
+        if (ShardRouter.get().hasOwnDatabase(user.getBranchId())) {
+            System.err.println("Branch " + user.getBranchId() + " has its own database; register its members there!");
+            return false;
+        }
+
         User existingUser = userDAO.getUserByEmail(user.getEmail());
         if (existingUser != null) {
             System.err.println("User with email " + user.getEmail() + " already exists!");
@@ -100,11 +292,17 @@ public class LibraryService {
     }
 
     public List<User> getAllUsers() {
-        return userDAO.getAllUsers();
+        return admission.call(Operation.BROWSE, Collections.emptyList(), userDAO::getAllUsers);
+    }
+
+    // Keyset-paginated; type may be null for all membership types
+    public List<User> getActiveUsers(User.MembershipType type, User after, int limit) {
+        return admission.call(Operation.BROWSE, Collections.emptyList(),
+                () -> userDAO.getActiveUsers(type, after, limit));
     }
 
     public List<User> searchUsersByName(String name) {
-        return userDAO.searchUsersByName(name);
+        return admission.call(Operation.SEARCH, Collections.emptyList(), () -> userDAO.searchUsersByName(name));
     }
 
     public User getUserById(int userId) {
@@ -130,6 +328,10 @@ public class LibraryService {
     // ==================== Transaction Management ====================
 
     public boolean borrowBook(int userId, int bookId) {
+        return admission.call(Operation.BORROW, false, () -> borrowBookAdmitted(userId, bookId));
+    }
+
+    private boolean borrowBookAdmitted(int userId, int bookId) {
         User user = userDAO.getUserById(userId);
         if (user == null) {
             System.err.println("User not found!");
@@ -141,92 +343,285 @@ public class LibraryService {
             return false;
         }
 
-        Book book = bookDAO.getBookById(bookId);
-        if (book == null) {
-            System.err.println("Book not found!");
+        // One locked DB transaction, as for a bulk borrow, so a deadlock is retried rather than lost
+        BulkResult result;
+        try {
+            result = resilience.execute("borrow book " + bookId,
+                    () -> borrowBooksOnce(user, Collections.singletonList(bookId))).get(0);
+        } catch (DataAccessException e) {
+            System.err.println("Error borrowing book: " + e.getMessage());
             return false;
         }
 
-        if (!bookDAO.isBookAvailable(bookId)) {
-            System.err.println("Book is not available!");
+        if (!result.isSuccess()) {
+            System.err.println(result.getMessage() + "!");
             return false;
         }
+        System.out.println("Book borrowed successfully! " + result.getMessage());
+        return true;
+    }
 
-        if (transactionDAO.hasActiveBorrowing(userId, bookId)) {
-            System.err.println("User already has this book borrowed!");
+    /**
+     * Lends a copy held by a branch with its own database to a member, moving the copy
+     * into the home database (see TransferCoordinator). The result is an ordinary loan
+     * that is returned like any other. Returns the new loan, or null if the borrow was
+     * refused or failed.
+     */
+    public Transaction transferAndBorrow(int userId, int sourceBranchId, int sourceBookId) {
+        return admission.call(Operation.BORROW, null,
+                () -> transferCoordinator.transferAndBorrow(userId, sourceBranchId, sourceBookId));
+    }
+
+    public boolean returnBook(int transactionId) {
+        return admission.call(Operation.RETURN, false, () -> returnBookAdmitted(transactionId));
+    }
+
+    // The status, fine and freed copy are written in one DB transaction, retried as a whole
+    private boolean returnBookAdmitted(int transactionId) {
+        BulkResult result;
+        try {
+            result = resilience.execute("return transaction " + transactionId,
+                    () -> returnBooksOnce(Collections.singletonList(transactionId))).get(0);
+        } catch (DataAccessException e) {
+            System.err.println("Error returning book: " + e.getMessage());
             return false;
         }
 
-        List<Transaction> activeTransactions = transactionDAO.getActiveBorrowingsByUserId(userId);
-        int borrowLimit = getBorrowingLimit(user.getMembershipType());
-
-        if (activeTransactions.size() >= borrowLimit) {
-            System.err.println("User has reached borrowing limit (" + borrowLimit + " books)!");
+        if (!result.isSuccess()) {
+            System.err.println(result.getMessage() + "!");
             return false;
         }
+        System.out.println("Book returned successfully! " + result.getMessage());
+        return true;
+    }
 
-        LocalDate borrowDate = LocalDate.now();
-        LocalDate dueDate = borrowDate.plusDays(getBorrowingPeriod(user.getMembershipType()));
+    /**
+     * Borrows several books for one user in a single DB transaction: the user is validated
+     * once, all requested book rows are locked with one query and the new loans are written
+     * as batches. Items that fail validation are reported without aborting the others.
+     */
+    public List<BulkResult> borrowBooks(int userId, List<Integer> bookIds) {
+        List<BulkResult> results = admission.call(Operation.BORROW, null, () -> borrowBooksAdmitted(userId, bookIds));
+        return results != null ? results : rejectedAll(bookIds);
+    }
 
-        Transaction transaction = new Transaction(bookId, userId, borrowDate, dueDate,
-                Transaction.TransactionStatus.BORROWED);
+    private List<BulkResult> borrowBooksAdmitted(int userId, List<Integer> bookIds) {
+        List<BulkResult> results = new ArrayList<>();
 
-        if (transactionDAO.createTransaction(transaction)) {
-            int newAvailableCopies = book.getAvailableCopies() - 1;
-            bookDAO.updateAvailableCopies(bookId, newAvailableCopies);
-            System.out.println("Book borrowed successfully! Due date: " + dueDate);
-            return true;
+        User user = userDAO.getUserById(userId);
+        if (user == null || user.getStatus() != User.Status.ACTIVE) {
+            String message = user == null ? "User not found" : "User is not active";
+            for (int bookId : bookIds) {
+                results.add(BulkResult.failed(bookId, message));
+            }
+            return results;
         }
 
-        return false;
+        try {
+            results = resilience.execute("borrow books", () -> borrowBooksOnce(user, bookIds));
+            System.out.println(succeeded(results) + " of " + bookIds.size() + " book(s) borrowed.");
+            return results;
+        } catch (DataAccessException e) {
+            System.err.println("Error in bulk borrow: " + e.getMessage());
+            for (int bookId : bookIds) {
+                results.add(BulkResult.failed(bookId, "Bulk borrow failed: " + e.getMessage()));
+            }
+            return results;
+        }
     }
 
-    public boolean returnBook(int transactionId) {
-        Transaction transaction = transactionDAO.getTransactionById(transactionId);
+    // One attempt; on a deadlock it is rolled back and run again from the start
+    private List<BulkResult> borrowBooksOnce(User user, List<Integer> bookIds) throws SQLException {
+        List<BulkResult> results = new ArrayList<>();
+        int userId = user.getUserId();
+        Set<Integer> distinctIds = new LinkedHashSet<>(bookIds);
+        LoanPolicy policy = policyEngine.getPolicy();
+        int borrowLimit = policy.getMaxBooks(user.getMembershipType());
+        LocalDate borrowDate = LocalDate.now();
 
-        if (transaction == null) {
-            System.err.println("Transaction not found!");
-            return false;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            Map<Integer, Book> books = bookDAO.lockBooks(conn, distinctIds);
+            Map<Integer, Integer> readyHolds = holdDAO.lockReadyHolds(conn, userId, distinctIds);
+            Set<Integer> borrowedBookIds = transactionDAO.getActiveBorrowedBookIds(conn, userId);
+            int remaining = borrowLimit - borrowedBookIds.size();
+
+            List<Transaction> newTransactions = new ArrayList<>();
+            Map<Integer, Integer> copyDeltas = new HashMap<>();
+            List<Integer> fulfilledHolds = new ArrayList<>();
+            Set<Integer> seen = new HashSet<>();
+
+            for (int bookId : bookIds) {
+                Book book = books.get(bookId);
+                Integer holdId = readyHolds.get(bookId);
+
+                if (!seen.add(bookId)) {
+                    results.add(BulkResult.failed(bookId, "Duplicate book in request"));
+                } else if (book == null) {
+                    results.add(BulkResult.failed(bookId, "Book not found"));
+                } else if (borrowedBookIds.contains(bookId)) {
+                    results.add(BulkResult.failed(bookId, "User already has this book borrowed"));
+                } else if (holdId == null && book.getAvailableCopies() <= 0) {
+                    results.add(BulkResult.failed(bookId, "Book is not available"));
+                } else if (remaining <= 0) {
+                    results.add(BulkResult.failed(bookId, "Borrowing limit reached (" + borrowLimit + " books)"));
+                } else {
+                    remaining--;
+                    LocalDate dueDate = borrowDate.plusDays(
+                            policy.getLoanDays(user.getMembershipType(), book.getCategory()));
+                    newTransactions.add(new Transaction(bookId, userId, borrowDate, dueDate,
+                            Transaction.TransactionStatus.BORROWED));
+                    if (holdId != null) {
+                        fulfilledHolds.add(holdId);
+                    } else {
+                        copyDeltas.put(bookId, -1);
+                    }
+                    results.add(BulkResult.ok(bookId, "Due date: " + dueDate));
+                }
+            }
+
+            transactionDAO.createTransactions(conn, newTransactions);
+            bookDAO.adjustAvailableCopies(conn, copyDeltas);
+            holdDAO.fulfillHolds(conn, fulfilledHolds);
+            conn.commit();
+            eventBus.publishStaged();
+
+            for (Transaction transaction : newTransactions) {
+                Book book = books.get(transaction.getBookId());
+                circulationStats.recordBorrow(book, user.getMembershipType());
+                popularTitles.recordBorrow(book);
+            }
+        } catch (SQLException e) {
+            rollback(conn);
+            throw e;
+        } finally {
+            eventBus.discardStaged();
+            DatabaseConnection.closeConnection(conn);
         }
+        return results;
+    }
 
-        if (transaction.getStatus() == Transaction.TransactionStatus.RETURNED) {
-            System.err.println("Book already returned!");
-            return false;
+    /**
+     * Returns several loans in a single DB transaction, e.g. when emptying the book drop.
+     * Fines and availability changes are written as batches; copies of held titles go to
+     * the next waiting patron in the same transaction, who is notified after the commit.
+     */
+    public List<BulkResult> returnBooks(List<Integer> transactionIds) {
+        List<BulkResult> results = admission.call(Operation.RETURN, null, () -> returnBooksAdmitted(transactionIds));
+        return results != null ? results : rejectedAll(transactionIds);
+    }
+
+    private List<BulkResult> returnBooksAdmitted(List<Integer> transactionIds) {
+        try {
+            List<BulkResult> results = resilience.execute("return books", () -> returnBooksOnce(transactionIds));
+            System.out.println(succeeded(results) + " of " + transactionIds.size() + " book(s) returned.");
+            return results;
+        } catch (DataAccessException e) {
+            System.err.println("Error in bulk return: " + e.getMessage());
+            List<BulkResult> results = new ArrayList<>();
+            for (int transactionId : transactionIds) {
+                results.add(BulkResult.failed(transactionId, "Bulk return failed: " + e.getMessage()));
+            }
+            return results;
         }
+    }
 
+    // One attempt; on a deadlock it is rolled back and run again from the start
+    private List<BulkResult> returnBooksOnce(List<Integer> transactionIds) throws SQLException {
+        List<BulkResult> results = new ArrayList<>();
+        List<Integer> readyHolds;
         LocalDate returnDate = LocalDate.now();
-        double fine = transactionDAO.calculateFine(transaction.getDueDate(), returnDate);
 
-        if (transactionDAO.updateTransactionStatus(transactionId, Transaction.TransactionStatus.RETURNED,
-                returnDate, fine)) {
-       
-            Book book = bookDAO.getBookById(transaction.getBookId());
-            if (book != null) {
-                int newAvailableCopies = book.getAvailableCopies() + 1;
-                bookDAO.updateAvailableCopies(transaction.getBookId(), newAvailableCopies);
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            Map<Integer, Transaction> transactions = transactionDAO.lockTransactions(conn,
+                    new LinkedHashSet<>(transactionIds));
+
+            Set<Integer> bookIds = new HashSet<>();
+            Set<Integer> userIds = new HashSet<>();
+            for (Transaction transaction : transactions.values()) {
+                bookIds.add(transaction.getBookId());
+                userIds.add(transaction.getUserId());
+            }
+            Map<Integer, Book> books = bookDAO.lockBooks(conn, bookIds);
+            Map<Integer, User.MembershipType> membershipTypes = userDAO.getMembershipTypes(conn, userIds);
+            LoanPolicy policy = policyEngine.getPolicy();
+
+            List<Transaction> returned = new ArrayList<>();
+            Map<Integer, Integer> freedCopies = new HashMap<>();
+            Map<Integer, BigDecimal> fineDeltas = new HashMap<>();
+            Set<Integer> seen = new HashSet<>();
+
+            for (int transactionId : transactionIds) {
+                Transaction transaction = transactions.get(transactionId);
+
+                if (!seen.add(transactionId)) {
+                    results.add(BulkResult.failed(transactionId, "Duplicate transaction in request"));
+                } else if (transaction == null) {
+                    results.add(BulkResult.failed(transactionId, "Transaction not found"));
+                } else if (transaction.getStatus() == Transaction.TransactionStatus.RETURNED) {
+                    results.add(BulkResult.failed(transactionId, "Book already returned"));
+                } else {
+                    Book book = books.get(transaction.getBookId());
+                    BigDecimal fine = policy.calculateFine(
+                            membershipTypes.getOrDefault(transaction.getUserId(), User.MembershipType.PUBLIC),
+                            book != null ? book.getCategory() : null, transaction.getDueDate(), returnDate);
+                    fineDeltas.merge(transaction.getUserId(), fine.subtract(transaction.getFineAmount()),
+                            BigDecimal::add);
+                    transaction.setStatus(Transaction.TransactionStatus.RETURNED);
+                    transaction.setReturnDate(returnDate);
+                    transaction.setFineAmount(fine);
+                    returned.add(transaction);
+                    freedCopies.merge(transaction.getBookId(), 1, Integer::sum);
+                    results.add(BulkResult.ok(transactionId, fine.signum() > 0 ? "Fine: Rs. " + fine : "No fine."));
+                }
             }
 
-            if (fine > 0) {
-                System.out.println("Book returned successfully! Fine: Rs. " + fine);
-            } else {
-                System.out.println("Book returned successfully! No fine.");
+            transactionDAO.updateTransactions(conn, returned);
+            fineLedgerDAO.addFines(conn, fineDeltas);
+            readyHolds = holdQueueManager.releaseCopies(conn, freedCopies);
+            conn.commit();
+            eventBus.publishStaged();
+
+            for (int i = 0; i < returned.size(); i++) {
+                circulationStats.recordReturn();
             }
-            return true;
+        } catch (SQLException e) {
+            rollback(conn);
+            throw e;
+        } finally {
+            eventBus.discardStaged();
+            DatabaseConnection.closeConnection(conn);
         }
 
-        return false;
+        holdQueueManager.notifyReady(readyHolds);
+        return results;
     }
 
     public List<Transaction> getAllTransactions() {
-        return transactionDAO.getAllTransactions();
+        return admission.call(Operation.HISTORY, Collections.emptyList(), transactionDAO::getAllTransactions);
     }
 
     public List<Transaction> getUserTransactions(int userId) {
-        return transactionDAO.getTransactionsByUserId(userId);
+        return admission.call(Operation.HISTORY, Collections.emptyList(),
+                () -> transactionDAO.getTransactionsByUserId(userId));
+    }
+
+    // Full history including archived transactions when includeArchived is set
+    public List<Transaction> getUserTransactions(int userId, boolean includeArchived) {
+        return admission.call(Operation.HISTORY, Collections.emptyList(),
+                () -> transactionDAO.getTransactionsByUserId(userId, includeArchived));
     }
 
     public List<Transaction> getActiveBorrowings(int userId) {
-        return transactionDAO.getActiveBorrowingsByUserId(userId);
+        return admission.call(Operation.HISTORY, Collections.emptyList(),
+                () -> transactionDAO.getActiveBorrowingsByUserId(userId));
     }
 
     public List<Transaction> getOverdueTransactions() {
@@ -235,35 +630,169 @@ public class LibraryService {
         return transactionDAO.getOverdueTransactions();
     }
 
-    public double getUserTotalFines(int userId) {
+    // Returns the number of loans updated, or -1 if the run failed and should be resumed
+    public int runOverdueAccrual() {
+        return overdueAccrualJob.run(LocalDate.now());
+    }
+
+    // Returns the number of rows exported, or -1 if the export failed
+    public int exportTransactionHistory() {
+        return transactionExporter.export();
+    }
+
+    // Returns the number of transactions archived, or -1 if the run failed
+    public int archiveOldTransactions() {
+        return transactionArchiver.archive(LocalDate.now());
+    }
+
+    public int getArchiveRetentionMonths() {
+        return transactionArchiver.getRetentionMonths();
+    }
+
+    // Query engine over the exported history, reloaded if an export ran since last time
+    public HistoryQueryEngine getHistoryAnalytics() {
+        historyQueryEngine.refresh();
+        return historyQueryEngine;
+    }
+
+    // Null filters match everything; records written in the last moment may not be on disk yet
+    public List<AuditRecord> getAuditTrail(Integer userId, Integer bookId, LocalDateTime from, LocalDateTime to) {
+        return new AuditLogReader(auditLog.getDir()).find(userId, bookId, from, to);
+    }
+
+    public BigDecimal getUserTotalFines(int userId) {
         return transactionDAO.getTotalFinesByUserId(userId);
     }
 
+    // ==================== Hold Management ====================
+
+    public boolean placeHold(int userId, int bookId) {
+        return admission.call(Operation.HOLD, false, () -> placeHoldAdmitted(userId, bookId));
+    }
+
+    private boolean placeHoldAdmitted(int userId, int bookId) {
+        User user = userDAO.getUserById(userId);
+        if (user == null) {
+            System.err.println("User not found!");
+            return false;
+        }
+
+        if (user.getStatus() != User.Status.ACTIVE) {
+            System.err.println("User is not active!");
+            return false;
+        }
+
+        Book book = bookDAO.getBookById(bookId);
+        if (book == null) {
+            System.err.println("Book not found!");
+            return false;
+        }
+
+        if (book.getAvailableCopies() > 0 && !holdQueueManager.hasWaitingHolds(bookId)) {
+            System.err.println("Book is available, borrow it directly!");
+            return false;
+        }
+
+        if (transactionDAO.hasActiveBorrowing(userId, bookId)) {
+            System.err.println("User already has this book borrowed!");
+            return false;
+        }
+
+        if (holdDAO.hasPendingHold(userId, bookId)) {
+            System.err.println("User already has a hold on this book!");
+            return false;
+        }
+
+        Hold hold = new Hold(bookId, userId, Hold.HoldStatus.WAITING);
+        hold.setBookTitle(book.getTitle());
+        hold.setUserName(user.getName());
+
+        return holdDAO.createHold(hold);
+    }
+
+    public boolean cancelHold(int holdId) {
+        return admission.call(Operation.HOLD, false, () -> cancelHoldAdmitted(holdId));
+    }
+
+    private boolean cancelHoldAdmitted(int holdId) {
+        Hold hold = holdDAO.getHoldById(holdId);
+        if (hold == null) {
+            System.err.println("Hold not found!");
+            return false;
+        }
+
+        if (hold.getStatus() == Hold.HoldStatus.WAITING) {
+            return holdDAO.transitionHold(holdId, Hold.HoldStatus.WAITING, Hold.HoldStatus.CANCELLED, null);
+        }
+
+        // A READY hold owns a copy, which must be passed on to the next patron
+        if (hold.getStatus() == Hold.HoldStatus.READY) {
+            return resilience.execute("cancel hold " + holdId, () -> holdQueueManager.cancelReadyHold(hold));
+        }
+
+        System.err.println("Hold is no longer active!");
+        return false;
+    }
+
+    public List<Hold> getUserHolds(int userId) {
+        return admission.call(Operation.HOLD, Collections.emptyList(), () -> holdDAO.getHoldsByUserId(userId));
+    }
+
+    public void addHoldListener(HoldListener listener) {
+        holdQueueManager.addListener(listener);
+    }
+
+    // ==================== Statistics ====================
+
+    public CirculationStats getCirculationStats() {
+        return circulationStats;
+    }
+
+    public PopularTitlesTracker getPopularTitles() {
+        return popularTitles;
+    }
+
+    // Admitted, queued and rejected calls per operation
+    public List<AdmissionController.Stats> getAdmissionStats() {
+        return admission.getStats();
+    }
+
     // ==================== Helper Methods ====================
 
-    private int getBorrowingLimit(User.MembershipType type) {
-        switch (type) {
-            case STUDENT:
-                return MAX_BOOKS_STUDENT;
-            case FACULTY:
-                return MAX_BOOKS_FACULTY;
-            case PUBLIC:
-                return MAX_BOOKS_PUBLIC;
-            default:
-                return MAX_BOOKS_PUBLIC;
-        }
-    }
-
-    private int getBorrowingPeriod(User.MembershipType type) {
-        switch (type) {
-            case STUDENT:
-                return BORROW_PERIOD_STUDENT;
-            case FACULTY:
-                return BORROW_PERIOD_FACULTY;
-            case PUBLIC:
-                return BORROW_PERIOD_PUBLIC;
-            default:
-                return BORROW_PERIOD_PUBLIC;
+    private void runNightlyJobs() {
+        runOverdueAccrual();
+        // Archive only once the export has captured the final state of the rows
+        if (exportTransactionHistory() >= 0) {
+            archiveOldTransactions();
+        }
+        partitionMaintenanceJob.run(LocalDate.now());
+    }
+
+    private static int succeeded(List<BulkResult> results) {
+        int count = 0;
+        for (BulkResult result : results) {
+            if (result.isSuccess()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static List<BulkResult> rejectedAll(List<Integer> itemIds) {
+        List<BulkResult> results = new ArrayList<>();
+        for (int itemId : itemIds) {
+            results.add(BulkResult.failed(itemId, "Library system busy, not attempted"));
+        }
+        return results;
+    }
+
+    private void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                System.err.println("Error rolling back transaction: " + e.getMessage());
+            }
         }
     }
 }
@@ -0,0 +1,258 @@
+package com.library.service;
+
+import com.library.model.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Loan and fine rules compiled into flat lookup tables, one cell per membership type and
+ * book category. Instances are immutable; PolicyEngine swaps in a new one on reload.
+ * The fine lookup does no allocation: it works on epoch days and cents only.
+ *
+ * Properties are resolved as {@code TYPE.Category.key}, then {@code TYPE.key}, then
+ * {@code default.key}. Keys: max.books, loan.days, grace.days, fine.cap and fine.tiers,
+ * where tiers are {@code fromDay:ratePerDay} pairs such as {@code 1:5.00,8:10.00}.
+ * {@code holidays} is a comma separated list of dates that are never charged.
+ */
+public final class LoanPolicy {
+
+    // Longest overdue period given its own table entry; later days are extrapolated
+    private static final int MAX_TABLE_DAYS = 366;
+
+    private static final int OTHER_CATEGORY = 0;
+
+    private static final String[] KEYS = { "max.books", "loan.days", "grace.days", "fine.cap", "fine.tiers" };
+
+    private final Map<String, Integer> categoryIndex;
+    private final int categoryCount;
+
+    private final int[] maxBooks;
+    private final int[] loanDays;
+    private final int[] graceDays;
+    private final long[] capCents;
+    private final long[] lastRateCents;
+    private final long[][] cumulativeFineCents;
+    private final long[] holidays;
+
+    private LoanPolicy(Map<String, Integer> categoryIndex, int[] maxBooks, int[] loanDays, int[] graceDays,
+            long[] capCents, long[] lastRateCents, long[][] cumulativeFineCents, long[] holidays) {
+        this.categoryIndex = categoryIndex;
+        this.categoryCount = categoryIndex.size() + 1;
+        this.maxBooks = maxBooks;
+        this.loanDays = loanDays;
+        this.graceDays = graceDays;
+        this.capCents = capCents;
+        this.lastRateCents = lastRateCents;
+        this.cumulativeFineCents = cumulativeFineCents;
+        this.holidays = holidays;
+    }
+
+    public int getMaxBooks(User.MembershipType type) {
+        return maxBooks[cell(type, OTHER_CATEGORY)];
+    }
+
+    public int getLoanDays(User.MembershipType type, String category) {
+        return loanDays[cell(type, categoryOf(category))];
+    }
+
+    public BigDecimal calculateFine(User.MembershipType type, String category, LocalDate dueDate,
+            LocalDate returnDate) {
+        return BigDecimal.valueOf(fineCents(type, category, dueDate.toEpochDay(), returnDate.toEpochDay()), 2);
+    }
+
+    /**
+     * Fine in cents for a loan due on {@code dueEpochDay} and returned on {@code returnEpochDay}.
+     * Holidays and grace days are not charged.
+     */
+    public long fineCents(User.MembershipType type, String category, long dueEpochDay, long returnEpochDay) {
+        if (returnEpochDay <= dueEpochDay) {
+            return 0;
+        }
+        int cell = cell(type, categoryOf(category));
+
+        long chargeableDays = returnEpochDay - dueEpochDay - holidaysBetween(dueEpochDay, returnEpochDay)
+                - graceDays[cell];
+        if (chargeableDays <= 0) {
+            return 0;
+        }
+
+        long[] table = cumulativeFineCents[cell];
+        long fine;
+        if (chargeableDays < table.length) {
+            fine = table[(int) chargeableDays];
+        } else {
+            int last = table.length - 1;
+            fine = table[last] + (chargeableDays - last) * lastRateCents[cell];
+        }
+        return capCents[cell] > 0 ? Math.min(fine, capCents[cell]) : fine;
+    }
+
+    // Holidays in (fromEpochDay, toEpochDay]
+    private long holidaysBetween(long fromEpochDay, long toEpochDay) {
+        if (holidays.length == 0) {
+            return 0;
+        }
+        return upperBound(toEpochDay) - upperBound(fromEpochDay);
+    }
+
+    // Number of holidays <= epochDay
+    private int upperBound(long epochDay) {
+        int low = 0;
+        int high = holidays.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (holidays[mid] <= epochDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int categoryOf(String category) {
+        if (category == null) {
+            return OTHER_CATEGORY;
+        }
+        Integer index = categoryIndex.get(category);
+        return index != null ? index : OTHER_CATEGORY;
+    }
+
+    private int cell(User.MembershipType type, int category) {
+        return type.ordinal() * categoryCount + category;
+    }
+
+    // ==================== Compilation ====================
+
+    public static LoanPolicy compile(Properties props) {
+        // Only categories with their own overrides get a cell; all others share OTHER_CATEGORY
+        Map<String, Integer> categoryIndex = new HashMap<>();
+        for (String name : props.stringPropertyNames()) {
+            String category = categoryFromPropertyName(name);
+            if (category != null && !categoryIndex.containsKey(category)) {
+                categoryIndex.put(category, categoryIndex.size() + 1);
+            }
+        }
+
+        String[] categoryByIndex = new String[categoryIndex.size() + 1];
+        for (Map.Entry<String, Integer> entry : categoryIndex.entrySet()) {
+            categoryByIndex[entry.getValue()] = entry.getKey();
+        }
+
+        User.MembershipType[] types = User.MembershipType.values();
+        int cells = types.length * categoryByIndex.length;
+        int[] maxBooks = new int[cells];
+        int[] loanDays = new int[cells];
+        int[] graceDays = new int[cells];
+        long[] capCents = new long[cells];
+        long[] lastRateCents = new long[cells];
+        long[][] cumulativeFineCents = new long[cells][];
+
+        for (User.MembershipType type : types) {
+            for (int c = 0; c < categoryByIndex.length; c++) {
+                int cell = type.ordinal() * categoryByIndex.length + c;
+                String category = categoryByIndex[c];
+
+                maxBooks[cell] = Integer.parseInt(resolve(props, type, category, "max.books"));
+                loanDays[cell] = Integer.parseInt(resolve(props, type, category, "loan.days"));
+                graceDays[cell] = Integer.parseInt(resolve(props, type, category, "grace.days"));
+                capCents[cell] = toCents(resolve(props, type, category, "fine.cap"));
+
+                long[][] tiers = parseTiers(resolve(props, type, category, "fine.tiers"));
+                lastRateCents[cell] = tiers[tiers.length - 1][1];
+                cumulativeFineCents[cell] = buildFineTable(tiers, capCents[cell]);
+            }
+        }
+
+        return new LoanPolicy(categoryIndex, maxBooks, loanDays, graceDays, capCents, lastRateCents,
+                cumulativeFineCents, parseHolidays(props.getProperty("holidays", "")));
+    }
+
+    // "STUDENT.Technology.loan.days" -> "Technology"
+    private static String categoryFromPropertyName(String propertyName) {
+        for (User.MembershipType type : User.MembershipType.values()) {
+            String prefix = type.name() + ".";
+            if (!propertyName.startsWith(prefix)) {
+                continue;
+            }
+            for (String key : KEYS) {
+                String suffix = "." + key;
+                if (propertyName.endsWith(suffix) && propertyName.length() > prefix.length() + suffix.length()) {
+                    return propertyName.substring(prefix.length(), propertyName.length() - suffix.length());
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String resolve(Properties props, User.MembershipType type, String category, String key) {
+        String value = null;
+        if (category != null) {
+            value = props.getProperty(type.name() + "." + category + "." + key);
+        }
+        if (value == null) {
+            value = props.getProperty(type.name() + "." + key);
+        }
+        if (value == null) {
+            value = props.getProperty("default." + key);
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("No policy value for " + type + "." + key);
+        }
+        return value.trim();
+    }
+
+    // table[d] = total fine for d chargeable days, stopping early once the cap is reached
+    private static long[] buildFineTable(long[][] tiers, long capCents) {
+        long[] table = new long[MAX_TABLE_DAYS + 1];
+        int tier = 0;
+        int length = table.length;
+        for (int day = 1; day < table.length; day++) {
+            while (tier + 1 < tiers.length && day >= tiers[tier + 1][0]) {
+                tier++;
+            }
+            long rate = day >= tiers[0][0] ? tiers[tier][1] : 0;
+            table[day] = table[day - 1] + rate;
+            if (capCents > 0 && table[day] >= capCents) {
+                length = day + 1;
+                break;
+            }
+        }
+        return length == table.length ? table : Arrays.copyOf(table, length);
+    }
+
+    private static long[][] parseTiers(String value) {
+        String[] parts = value.split(",");
+        long[][] tiers = new long[parts.length][];
+        for (int i = 0; i < parts.length; i++) {
+            String[] tier = parts[i].trim().split(":");
+            if (tier.length != 2) {
+                throw new IllegalArgumentException("Invalid fine tier: " + parts[i]);
+            }
+            tiers[i] = new long[] { Long.parseLong(tier[0].trim()), toCents(tier[1]) };
+        }
+        Arrays.sort(tiers, (a, b) -> Long.compare(a[0], b[0]));
+        return tiers;
+    }
+
+    private static long[] parseHolidays(String value) {
+        if (value.trim().isEmpty()) {
+            return new long[0];
+        }
+        String[] parts = value.split(",");
+        long[] days = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            days[i] = LocalDate.parse(parts[i].trim()).toEpochDay();
+        }
+        return Arrays.stream(days).sorted().distinct().toArray();
+    }
+
+    private static long toCents(String amount) {
+        return new BigDecimal(amount.trim()).movePointRight(2).longValueExact();
+    }
+}
@@ -0,0 +1,172 @@
+package com.library.service;
+
+import com.library.dao.FineLedgerDAO;
+import com.library.dao.JobCheckpointDAO;
+import com.library.dao.TransactionDAO;
+import com.library.events.ChangeEventBus;
+import com.library.model.JobCheckpoint;
+import com.library.model.Transaction;
+import com.library.model.User;
+import com.library.util.DatabaseConnection;
+import com.library.util.LibraryConfig;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Nightly job that accrues fines on all open loans. Loans are walked in transaction_id
+ * order in fixed-size chunks; each chunk is locked, priced in parallel on a fork-join pool
+ * and written back with batched updates in one DB transaction together with the fine
+ * ledger deltas and the job checkpoint. A run that stops part way resumes after the last
+ * committed chunk when started again for the same date.
+ */
+public class OverdueAccrualJob {
+
+    public static final String JOB_NAME = "overdue-accrual";
+
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private final TransactionDAO transactionDAO;
+    private final FineLedgerDAO fineLedgerDAO;
+    private final JobCheckpointDAO checkpointDAO;
+    private final PolicyEngine policyEngine;
+    private final ForkJoinPool pool;
+
+    public OverdueAccrualJob(TransactionDAO transactionDAO, FineLedgerDAO fineLedgerDAO,
+            JobCheckpointDAO checkpointDAO, PolicyEngine policyEngine) {
+        this.transactionDAO = transactionDAO;
+        this.fineLedgerDAO = fineLedgerDAO;
+        this.checkpointDAO = checkpointDAO;
+        this.policyEngine = policyEngine;
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Accrues fines as of {@code asOf}. Returns the number of loans whose fine or status
+     * changed, or -1 if the run failed (it can be resumed by calling run again).
+     */
+    public synchronized int run(LocalDate asOf) {
+        JobCheckpoint checkpoint = checkpointDAO.getCheckpoint(JOB_NAME);
+        int lastId = 0;
+        if (checkpoint != null && asOf.equals(checkpoint.getRunDate())) {
+            if (checkpoint.isCompleted()) {
+                System.out.println("Overdue accrual already completed for " + asOf + ".");
+                return 0;
+            }
+            lastId = checkpoint.getLastId();
+            System.out.println("Resuming overdue accrual for " + asOf + " after transaction " + lastId + ".");
+        }
+
+        LoanPolicy policy = policyEngine.getPolicy();
+        long asOfEpochDay = asOf.toEpochDay();
+        int updated = 0;
+        LocalDate borrowedSince = null;
+        int chunkSize = LibraryConfig.get().getInt("batch.accrual.chunk.size", DEFAULT_CHUNK_SIZE);
+
+        while (true) {
+            Connection conn = null;
+            try {
+                conn = DatabaseConnection.getConnection();
+                conn.setAutoCommit(false);
+
+                if (borrowedSince == null) {
+                    borrowedSince = transactionDAO.getOldestOpenBorrowDate(conn);
+                }
+                List<Transaction> chunk = borrowedSince != null
+                        ? transactionDAO.lockOpenLoansAfter(conn, lastId, borrowedSince, chunkSize)
+                        : Collections.<Transaction>emptyList();
+                if (chunk.isEmpty()) {
+                    checkpointDAO.saveCheckpoint(conn, new JobCheckpoint(JOB_NAME, asOf, lastId, true));
+                    conn.commit();
+                    break;
+                }
+
+                List<Transaction> changed = pool.submit(() -> chunk.parallelStream()
+                        .map(t -> accrue(t, policy, asOfEpochDay))
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList())).get();
+
+                Map<Integer, BigDecimal> previousFines = new HashMap<>();
+                for (Transaction loan : chunk) {
+                    previousFines.put(loan.getTransactionId(), loan.getFineAmount());
+                }
+                Map<Integer, BigDecimal> fineDeltas = new HashMap<>();
+                for (Transaction transaction : changed) {
+                    BigDecimal delta = transaction.getFineAmount()
+                            .subtract(previousFines.get(transaction.getTransactionId()));
+                    fineDeltas.merge(transaction.getUserId(), delta, BigDecimal::add);
+                }
+
+                lastId = chunk.get(chunk.size() - 1).getTransactionId();
+                transactionDAO.applyAccruedFines(conn, changed);
+                fineLedgerDAO.addFines(conn, fineDeltas);
+                checkpointDAO.saveCheckpoint(conn, new JobCheckpoint(JOB_NAME, asOf, lastId, false));
+                conn.commit();
+                ChangeEventBus.getInstance().publishStaged();
+                updated += changed.size();
+            } catch (SQLException | InterruptedException | ExecutionException e) {
+                rollback(conn);
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                System.err.println("Error in overdue accrual after transaction " + lastId + ": " + e.getMessage());
+                e.printStackTrace();
+                return -1;
+            } finally {
+                ChangeEventBus.getInstance().discardStaged();
+                DatabaseConnection.closeConnection(conn);
+            }
+        }
+
+        System.out.println("Overdue accrual for " + asOf + " updated " + updated + " loan(s).");
+        return updated;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // Returns an updated copy of the loan, or null if neither fine nor status changes
+    private static Transaction accrue(Transaction loan, LoanPolicy policy, long asOfEpochDay) {
+        long dueEpochDay = loan.getDueDate().toEpochDay();
+        User.MembershipType type = loan.getMembershipType() != null ? loan.getMembershipType()
+                : User.MembershipType.PUBLIC;
+
+        BigDecimal fine = BigDecimal.valueOf(
+                policy.fineCents(type, loan.getBookCategory(), dueEpochDay, asOfEpochDay), 2);
+        Transaction.TransactionStatus status = dueEpochDay < asOfEpochDay
+                ? Transaction.TransactionStatus.OVERDUE
+                : loan.getStatus();
+
+        if (fine.compareTo(loan.getFineAmount()) == 0 && status == loan.getStatus()) {
+            return null;
+        }
+
+        Transaction updated = new Transaction();
+        updated.setTransactionId(loan.getTransactionId());
+        updated.setUserId(loan.getUserId());
+        updated.setFineAmount(fine);
+        updated.setStatus(status);
+        return updated;
+    }
+
+    private static void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                System.err.println("Error rolling back transaction: " + e.getMessage());
+            }
+        }
+    }
+}
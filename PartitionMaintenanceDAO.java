@@ -0,0 +1,113 @@
+package com.library.dao;
+
+import com.library.util.DatabaseConnection;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Partition management for the transactions table once it has been range-partitioned
+ * by borrow_date (see partitioning.sql). Every method is a no-op on an unpartitioned table.
+ */
+public class PartitionMaintenanceDAO {
+
+    public static final String MAX_PARTITION = "pmax";
+
+    // TO_DAYS('1970-01-01'); converts partition bounds to epoch days
+    private static final long TO_DAYS_EPOCH = 719528;
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("p\\w+");
+
+    /**
+     * Exclusive upper bound of each bounded partition, keyed by name, oldest first.
+     * Empty if the table is not partitioned.
+     */
+    public Map<String, LocalDate> getPartitionBounds() {
+        Map<String, LocalDate> bounds = new LinkedHashMap<>();
+        String sql = "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'transactions' " +
+                "AND PARTITION_NAME IS NOT NULL ORDER BY PARTITION_ORDINAL_POSITION";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                String description = rs.getString("PARTITION_DESCRIPTION");
+                if (!"MAXVALUE".equalsIgnoreCase(description)) {
+                    bounds.put(rs.getString("PARTITION_NAME"),
+                            LocalDate.ofEpochDay(Long.parseLong(description) - TO_DAYS_EPOCH));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving transaction partitions: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return bounds;
+    }
+
+    // Splits the month off the front of pmax as a new partition named pYYYYMM
+    public boolean addMonthlyPartition(YearMonth month) {
+        String sql = String.format("ALTER TABLE transactions REORGANIZE PARTITION %s INTO (" +
+                "PARTITION p%04d%02d VALUES LESS THAN (TO_DAYS('%s')), " +
+                "PARTITION %s VALUES LESS THAN MAXVALUE)",
+                MAX_PARTITION, month.getYear(), month.getMonthValue(), month.plusMonths(1).atDay(1),
+                MAX_PARTITION);
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+
+            stmt.executeUpdate(sql);
+            System.out.println("Created transactions partition for " + month + ".");
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error creating transactions partition for " + month + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    // Rows left in the partition; -1 on error
+    public long countRows(String partition) {
+        String sql = "SELECT COUNT(*) FROM transactions PARTITION (" + checkName(partition) + ")";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            System.err.println("Error counting rows in partition " + partition + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    public boolean dropPartition(String partition) {
+        String sql = "ALTER TABLE transactions DROP PARTITION " + checkName(partition);
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+
+            stmt.executeUpdate(sql);
+            System.out.println("Dropped transactions partition " + partition + ".");
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error dropping partition " + partition + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    // Partition names are spliced into DDL, so only accept the names we generate
+    private static String checkName(String partition) {
+        if (!PARTITION_NAME.matcher(partition).matches()) {
+            throw new IllegalArgumentException("Invalid partition name: " + partition);
+        }
+        return partition;
+    }
+}
@@ -0,0 +1,70 @@
+package com.library.service;
+
+import com.library.dao.PartitionMaintenanceDAO;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Map;
+
+/**
+ * Keeps the monthly partitions of a partitioned transactions table rolling: creates
+ * partitions a few months ahead so new loans never land in pmax, and drops partitions
+ * older than the archive retention period once archival has emptied them. Partitions
+ * that still hold rows (loans that were never returned) are left alone.
+ */
+public class PartitionMaintenanceJob {
+
+    private static final int MONTHS_AHEAD = 3;
+
+    private final PartitionMaintenanceDAO partitionDAO;
+    private final int retentionMonths;
+
+    public PartitionMaintenanceJob(PartitionMaintenanceDAO partitionDAO, int retentionMonths) {
+        this.partitionDAO = partitionDAO;
+        this.retentionMonths = retentionMonths;
+    }
+
+    /**
+     * Returns the number of partitions created or dropped, or -1 if a step failed. Does
+     * nothing when the table is not partitioned.
+     */
+    public synchronized int run(LocalDate asOf) {
+        Map<String, LocalDate> bounds = partitionDAO.getPartitionBounds();
+        if (bounds.isEmpty()) {
+            return 0;
+        }
+        int changes = 0;
+
+        // Bounds are ascending, so the last one is where pmax currently starts
+        LocalDate covered = null;
+        for (LocalDate bound : bounds.values()) {
+            covered = bound;
+        }
+        LocalDate target = YearMonth.from(asOf).plusMonths(MONTHS_AHEAD + 1).atDay(1);
+        while (covered.isBefore(target)) {
+            if (!partitionDAO.addMonthlyPartition(YearMonth.from(covered))) {
+                return -1;
+            }
+            covered = YearMonth.from(covered).plusMonths(1).atDay(1);
+            changes++;
+        }
+
+        LocalDate dropBefore = YearMonth.from(asOf).minusMonths(retentionMonths).atDay(1);
+        for (Map.Entry<String, LocalDate> partition : bounds.entrySet()) {
+            if (partition.getValue().isAfter(dropBefore)) {
+                break;
+            }
+            long rows = partitionDAO.countRows(partition.getKey());
+            if (rows < 0) {
+                return -1;
+            }
+            if (rows == 0) {
+                if (!partitionDAO.dropPartition(partition.getKey())) {
+                    return -1;
+                }
+                changes++;
+            }
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,104 @@
+package com.library.service;
+
+import com.library.util.LibraryConfig;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the loan/fine policy file, compiles it into a {@link LoanPolicy} and reloads it
+ * when the file changes. Readers call {@link #getPolicy()} and keep using the instance
+ * they got; a reload only swaps the reference.
+ */
+public class PolicyEngine {
+
+    public static final String DEFAULT_POLICY_FILE = "library-policy.properties";
+
+    private static final long RELOAD_CHECK_SECONDS = 10;
+
+    private final File policyFile;
+    private volatile LoanPolicy policy;
+    private volatile long loadedModified;
+    private ScheduledExecutorService watcher;
+
+    public PolicyEngine() {
+        this(new File(LibraryConfig.get().getString("policy.file", DEFAULT_POLICY_FILE)));
+    }
+
+    public PolicyEngine(File policyFile) {
+        this.policyFile = policyFile;
+        this.policy = LoanPolicy.compile(defaults());
+        reload();
+    }
+
+    public LoanPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Recompiles the policy from the file. On any error the current policy stays active.
+     */
+    public synchronized boolean reload() {
+        if (!policyFile.isFile()) {
+            return false;
+        }
+
+        long modified = policyFile.lastModified();
+        Properties props = defaults();
+        try (InputStream in = new FileInputStream(policyFile)) {
+            props.load(in);
+            policy = LoanPolicy.compile(props);
+            loadedModified = modified;
+            System.out.println("Loan policy loaded from " + policyFile.getPath());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading loan policy, keeping previous policy: " + e.getMessage());
+            loadedModified = modified;
+        }
+        return false;
+    }
+
+    public synchronized void startWatching() {
+        if (watcher != null) {
+            return;
+        }
+        watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "policy-watcher");
+            t.setDaemon(true);
+            return t;
+        });
+        watcher.scheduleWithFixedDelay(() -> {
+            if (policyFile.isFile() && policyFile.lastModified() != loadedModified) {
+                reload();
+            }
+        }, RELOAD_CHECK_SECONDS, RELOAD_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+    }
+
+    // Built-in rules, matching the limits the library has always used
+    private static Properties defaults() {
+        Properties props = new Properties();
+        props.setProperty("default.grace.days", "0");
+        props.setProperty("default.fine.tiers", "1:5.00");
+        props.setProperty("default.fine.cap", "0");
+        props.setProperty("STUDENT.max.books", "5");
+        props.setProperty("STUDENT.loan.days", "14");
+        props.setProperty("FACULTY.max.books", "10");
+        props.setProperty("FACULTY.loan.days", "30");
+        props.setProperty("PUBLIC.max.books", "3");
+        props.setProperty("PUBLIC.loan.days", "7");
+        return props;
+    }
+}
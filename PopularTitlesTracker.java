@@ -0,0 +1,162 @@
+package com.library.service;
+
+import com.library.dao.StatisticsDAO;
+import com.library.model.Book;
+import com.library.util.SpaceSavingSketch;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Most-borrowed rankings over rolling windows of up to {@link #DAYS_KEPT} days, overall
+ * and per category. Each day gets its own Space-Saving sketches, kept in a ring indexed by
+ * epoch day; a window query merges the sketches of the days it covers. Memory is bounded
+ * by days x (categories + 1) x sketch capacity, however long the loan history grows.
+ */
+public class PopularTitlesTracker {
+
+    public static final int DAYS_KEPT = 30;
+
+    // Counters per sketch; titles borrowed more than 1/CAPACITY of a day's loans are exact
+    private static final int CAPACITY = 200;
+
+    private static class DaySketches {
+        final long epochDay;
+        final SpaceSavingSketch overall = new SpaceSavingSketch(CAPACITY);
+        final ConcurrentHashMap<String, SpaceSavingSketch> byCategory = new ConcurrentHashMap<>();
+
+        DaySketches(long epochDay) {
+            this.epochDay = epochDay;
+        }
+
+        SpaceSavingSketch category(String category) {
+            return byCategory.computeIfAbsent(category, k -> new SpaceSavingSketch(CAPACITY));
+        }
+    }
+
+    private final StatisticsDAO statisticsDAO;
+    private final AtomicReferenceArray<DaySketches> days = new AtomicReferenceArray<>(DAYS_KEPT);
+
+    // Titles of the books currently held by some sketch; pruned when a day is recycled
+    private final ConcurrentHashMap<Integer, String> titles = new ConcurrentHashMap<>();
+
+    public PopularTitlesTracker(StatisticsDAO statisticsDAO) {
+        this.statisticsDAO = statisticsDAO;
+    }
+
+    // Replays the loans of the retained days; older history is never read
+    public void load() {
+        statisticsDAO.scanLoansSince(LocalDate.now().minusDays(DAYS_KEPT - 1),
+                (bookId, title, category, borrowDate) -> record(bookId, title, category, borrowDate.toEpochDay()));
+    }
+
+    public void recordBorrow(Book book) {
+        record(book.getBookId(), book.getTitle(), book.getCategory(), LocalDate.now().toEpochDay());
+    }
+
+    /**
+     * Returns up to {@code limit} titles ranked by loans over the last {@code windowDays}
+     * days (capped at {@link #DAYS_KEPT}), optionally restricted to one category. Counts
+     * may overestimate titles near the bottom of a busy day's sketch.
+     */
+    public List<TitleCount> getTopTitles(int windowDays, String category, int limit) {
+        long today = LocalDate.now().toEpochDay();
+        Map<Integer, Long> totals = new HashMap<>();
+
+        for (long epochDay = today - Math.min(windowDays, DAYS_KEPT) + 1; epochDay <= today; epochDay++) {
+            DaySketches day = days.get(index(epochDay));
+            if (day == null || day.epochDay != epochDay) {
+                continue;
+            }
+            SpaceSavingSketch sketch = category == null ? day.overall : day.byCategory.get(category);
+            if (sketch != null) {
+                sketch.addTo(totals);
+            }
+        }
+
+        List<Map.Entry<Integer, Long>> ranked = new ArrayList<>(totals.entrySet());
+        ranked.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+        List<TitleCount> top = new ArrayList<>();
+        for (Map.Entry<Integer, Long> entry : ranked.subList(0, Math.min(limit, ranked.size()))) {
+            top.add(new TitleCount(entry.getKey(), titles.get(entry.getKey()), entry.getValue()));
+        }
+        return top;
+    }
+
+    // Categories with loans in the retained days
+    public Set<String> getCategories() {
+        Set<String> categories = new TreeSet<>();
+        for (int i = 0; i < DAYS_KEPT; i++) {
+            DaySketches day = days.get(i);
+            if (day != null) {
+                categories.addAll(day.byCategory.keySet());
+            }
+        }
+        return categories;
+    }
+
+    // ==================== Helpers ====================
+
+    private void record(int bookId, String title, String category, long epochDay) {
+        DaySketches day = day(epochDay);
+        if (day == null) {
+            return;
+        }
+        if (title != null) {
+            titles.put(bookId, title);
+        }
+        day.overall.offer(bookId);
+        day.category(categoryKey(category)).offer(bookId);
+    }
+
+    // The sketches for the given day, recycling the ring slot of an expired day
+    private DaySketches day(long epochDay) {
+        int index = index(epochDay);
+        while (true) {
+            DaySketches current = days.get(index);
+            if (current != null && current.epochDay == epochDay) {
+                return current;
+            }
+            if (current != null && current.epochDay > epochDay) {
+                return null; // older than the retained window
+            }
+            DaySketches fresh = new DaySketches(epochDay);
+            if (days.compareAndSet(index, current, fresh)) {
+                if (current != null) {
+                    pruneTitles();
+                }
+                return fresh;
+            }
+        }
+    }
+
+    private void pruneTitles() {
+        Map<Integer, Long> tracked = new HashMap<>();
+        for (int i = 0; i < DAYS_KEPT; i++) {
+            DaySketches day = days.get(i);
+            if (day != null) {
+                day.overall.addTo(tracked);
+                for (SpaceSavingSketch sketch : day.byCategory.values()) {
+                    sketch.addTo(tracked);
+                }
+            }
+        }
+        titles.keySet().retainAll(tracked.keySet());
+    }
+
+    private static int index(long epochDay) {
+        return (int) Math.floorMod(epochDay, (long) DAYS_KEPT);
+    }
+
+    private static String categoryKey(String category) {
+        return category != null ? category : "(none)";
+    }
+}
@@ -0,0 +1,89 @@
+package com.library.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies time limits to pooled connections and their statements, so one slow query
+ * cannot hold a connection indefinitely. Every statement gets a query timeout of
+ * db.query.timeout.ms, shortened to what is left of the request's {@link Deadline};
+ * connections handed out under a deadline also get a socket read timeout just past it,
+ * in case the server stops answering altogether.
+ */
+public final class QueryTimeouts {
+
+    // Socket timeouts only back up the server-side query timeout, so they fire a little later
+    private static final long SOCKET_GRACE_MILLIS = 2000;
+
+    private static final Executor DIRECT = Runnable::run;
+
+    private static final LibraryConfig CONFIG = LibraryConfig.get();
+
+    private static final LongAdder QUERY_TIMEOUTS = new LongAdder();
+    private static final LongAdder DEADLINES_EXCEEDED = new LongAdder();
+
+    private QueryTimeouts() {
+    }
+
+    // Called for each statement created on a pooled connection
+    static void apply(Statement statement) throws SQLException {
+        long limit = limitMillis();
+        if (limit != Deadline.NONE) {
+            statement.setQueryTimeout((int) Math.max(1, (limit + 999) / 1000));
+        }
+    }
+
+    /**
+     * Sets a socket timeout on a connection being handed out under a deadline. Returns
+     * true if it did, in which case {@link #resetSocketTimeout} must run on return.
+     */
+    static boolean applySocketTimeout(Connection connection) throws SQLException {
+        long remaining = Deadline.remainingMillis();
+        if (remaining == Deadline.NONE) {
+            return false;
+        }
+        long configured = CONFIG.getLong("db.socket.timeout.ms", 0);
+        long timeout = Math.max(1, remaining) + SOCKET_GRACE_MILLIS;
+        if (configured > 0 && configured <= timeout) {
+            return false;
+        }
+        connection.setNetworkTimeout(DIRECT, (int) Math.min(timeout, Integer.MAX_VALUE));
+        return true;
+    }
+
+    static void resetSocketTimeout(Connection connection) throws SQLException {
+        connection.setNetworkTimeout(DIRECT, (int) Math.min(CONFIG.getLong("db.socket.timeout.ms", 0), Integer.MAX_VALUE));
+    }
+
+    // Called when a statement on a pooled connection fails
+    static void recordFailure(SQLException e) {
+        if (e instanceof SQLTimeoutException) {
+            QUERY_TIMEOUTS.increment();
+        }
+    }
+
+    // Queries stopped by their timeout
+    public static long getQueryTimeouts() {
+        return QUERY_TIMEOUTS.sum();
+    }
+
+    // Queries refused because the request had already run out of time
+    public static long getDeadlinesExceeded() {
+        return DEADLINES_EXCEEDED.sum();
+    }
+
+    // Time the next query may take, or Deadline.NONE
+    private static long limitMillis() throws SQLTimeoutException {
+        long remaining = Deadline.remainingMillis();
+        if (remaining <= 0) {
+            DEADLINES_EXCEEDED.increment();
+            throw new SQLTimeoutException("Request ran out of time before the query was sent");
+        }
+        long configured = CONFIG.getLong("db.query.timeout.ms", 30000);
+        return configured > 0 ? Math.min(configured, remaining) : remaining;
+    }
+}
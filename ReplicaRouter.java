@@ -0,0 +1,132 @@
+package com.library.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads read-only connections over the configured replicas, round robin, with a
+ * connection pool per replica. A background check marks a replica down when it cannot
+ * be reached or lags the primary by more than db.replica.max.lag.seconds, and up again
+ * once it recovers; a replica that fails to connect is marked down straight away. With
+ * no healthy replica, callers get null and fall back to the primary.
+ */
+public class ReplicaRouter {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final List<Replica> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    private ScheduledExecutorService healthChecker;
+
+    public ReplicaRouter(List<String> urls) {
+        List<Replica> list = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            list.add(new Replica(new ConnectionPool("replica-" + (i + 1), urls.get(i))));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    public synchronized void startHealthChecks(long intervalSeconds) {
+        if (healthChecker != null || replicas.isEmpty()) {
+            return;
+        }
+        healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-health");
+            t.setDaemon(true);
+            return t;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkAll, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+            healthChecker = null;
+        }
+        for (Replica replica : replicas) {
+            replica.pool.shutdown();
+        }
+    }
+
+    // A connection to the next healthy replica, or null if none can be reached
+    public Connection getConnection() {
+        int count = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(count, 1));
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((start + i) % count);
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                return replica.pool.getConnection();
+            } catch (SQLException e) {
+                replica.healthy = false;
+                System.err.println("Replica " + replica.pool.getUrl() + " unavailable, taking it out of rotation: "
+                        + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void checkAll() {
+        for (Replica replica : replicas) {
+            boolean healthy = check(replica);
+            if (healthy != replica.healthy) {
+                System.out.println("Replica " + replica.pool.getUrl() + (healthy ? " is back in rotation." : " is out of rotation."));
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    private boolean check(Replica replica) {
+        try (Connection conn = replica.pool.getConnection()) {
+            if (!conn.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return false;
+            }
+            Long lag = replicationLag(conn);
+            return lag == null || lag <= LibraryConfig.get().getLong("db.replica.max.lag.seconds", 30);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Seconds behind the primary, or null if the server does not report replication
+     * status (not a replica, or no privilege to ask). A stopped replication thread
+     * reports NULL lag, which counts as infinitely behind.
+     */
+    private static Long replicationLag(Connection conn) {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SHOW REPLICA STATUS")) {
+            if (!rs.next()) {
+                return null;
+            }
+            long lag = rs.getLong("Seconds_Behind_Source");
+            return rs.wasNull() ? Long.MAX_VALUE : lag;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private static class Replica {
+        final ConnectionPool pool;
+        volatile boolean healthy = true;
+
+        Replica(ConnectionPool pool) {
+            this.pool = pool;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.library.util;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs units of database work with retries and a circuit breaker for the primary database.
+ *
+ * Deadlocks, lock wait timeouts and dropped connections are retried up to
+ * db.retry.max.attempts times with jittered exponential backoff (db.retry.base.delay.ms,
+ * capped at db.retry.max.delay.ms), but never past the request's {@link Deadline}; query
+ * timeouts are not retried. The work must be safe to run again: a whole DB transaction
+ * that rolls back on failure, or a read.
+ *
+ * After db.breaker.failure.threshold consecutive connection failures the breaker opens
+ * and {@link DatabaseConnection#getConnection()} fails at once for db.breaker.open.ms.
+ * After that one call is let through as a probe; its outcome closes or re-opens the breaker.
+ */
+public final class ResilientExecutor {
+
+    public interface SqlWork<T> {
+        T run() throws SQLException;
+    }
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static final int ER_QUERY_INTERRUPTED = 1317;
+    private static final int ER_QUERY_TIMEOUT = 3024;
+
+    private static final ResilientExecutor INSTANCE = new ResilientExecutor();
+
+    private final LibraryConfig config = LibraryConfig.get();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder trips = new LongAdder();
+
+    private ResilientExecutor() {
+    }
+
+    public static ResilientExecutor get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Runs the work, retrying transient failures. Throws DataAccessException once it
+     * fails for good, so callers can tell a failed lookup from one that found nothing.
+     */
+    public <T> T execute(String operation, SqlWork<T> work) {
+        int maxAttempts = Math.max(1, config.getInt("db.retry.max.attempts", 3));
+        for (int attempt = 1;; attempt++) {
+            try {
+                T result = work.run();
+                resetFailures();
+                return result;
+            } catch (CircuitOpenException e) {
+                throw new DataAccessException(DataAccessException.Kind.UNAVAILABLE,
+                        "Could not " + operation + ": " + e.getMessage(), e);
+            } catch (SQLException e) {
+                DataAccessException.Kind kind = classify(e);
+                // Connection failures are counted once, by afterConnect(); a connection lost
+                // mid-query is counted when the retry fails to reconnect
+                if (kind != DataAccessException.Kind.UNAVAILABLE) {
+                    resetFailures();
+                }
+                long delay = backoffMillis(attempt);
+                if (kind == DataAccessException.Kind.FAILED || kind == DataAccessException.Kind.TIMEOUT
+                        || attempt >= maxAttempts || delay >= Deadline.remainingMillis()) {
+                    throw new DataAccessException(kind, "Could not " + operation + ": " + e.getMessage(), e);
+                }
+
+                retries.increment();
+                System.err.println("Retrying " + operation + " in " + delay + "ms (attempt " + (attempt + 1)
+                        + " of " + maxAttempts + "): " + e.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new DataAccessException(kind, "Interrupted retrying " + operation, e);
+                }
+            }
+        }
+    }
+
+    public static DataAccessException.Kind classify(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (!(t instanceof SQLException)) {
+                continue;
+            }
+            SQLException sql = (SQLException) t;
+            String sqlState = sql.getSQLState();
+            if (sql instanceof SQLTimeoutException || sql.getErrorCode() == ER_QUERY_INTERRUPTED
+                    || sql.getErrorCode() == ER_QUERY_TIMEOUT) {
+                return sql.getErrorCode() == ER_LOCK_WAIT_TIMEOUT ? DataAccessException.Kind.CONFLICT
+                        : DataAccessException.Kind.TIMEOUT;
+            }
+            if (sql.getErrorCode() == ER_LOCK_DEADLOCK || sql.getErrorCode() == ER_LOCK_WAIT_TIMEOUT
+                    || "40001".equals(sqlState) || sql instanceof SQLTransactionRollbackException) {
+                return DataAccessException.Kind.CONFLICT;
+            }
+            if ((sqlState != null && sqlState.startsWith("08")) || sql instanceof SQLTransientConnectionException
+                    || sql instanceof SQLRecoverableException) {
+                return DataAccessException.Kind.UNAVAILABLE;
+            }
+        }
+        return DataAccessException.Kind.FAILED;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    // Connection attempts refused while the breaker was open
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    // Times the breaker has opened
+    public long getTrips() {
+        return trips.sum();
+    }
+
+    // Called by DatabaseConnection before checking out a primary connection
+    synchronized void beforeConnect() throws CircuitOpenException {
+        if (state == State.CLOSED) {
+            return;
+        }
+        long remaining = openedAt + config.getLong("db.breaker.open.ms", 10000) - System.currentTimeMillis();
+        if (state == State.OPEN && remaining <= 0) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return;
+        }
+        rejected.increment();
+        throw new CircuitOpenException(Math.max(remaining, 0));
+    }
+
+    // Called by DatabaseConnection with the outcome of a checkout
+    void afterConnect(SQLException failure) {
+        if (failure == null) {
+            if (getState() == State.HALF_OPEN) {
+                recordSuccess();
+            }
+        } else if (classify(failure) == DataAccessException.Kind.UNAVAILABLE) {
+            recordFailure();
+        } else {
+            releaseProbe();
+        }
+    }
+
+    // A probe that failed for an unrelated reason (e.g. pool timeout) lets the next call try
+    private synchronized void releaseProbe() {
+        probeInFlight = false;
+    }
+
+    // The database answered; only a successful connection closes an open breaker
+    private synchronized void resetFailures() {
+        if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        }
+    }
+
+    private synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            System.out.println("Database reachable again; resuming normal operation.");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    private synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN
+                || (state == State.CLOSED && consecutiveFailures >= config.getInt("db.breaker.failure.threshold", 5))) {
+            if (state == State.CLOSED) {
+                trips.increment();
+                System.err.println("Database unreachable after " + consecutiveFailures
+                        + " attempts; failing fast for a while.");
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            probeInFlight = false;
+        }
+    }
+
+    // Full jitter: uniformly between 0 and the exponential cap, so retries from many threads spread out
+    private long backoffMillis(int attempt) {
+        long base = Math.max(1, config.getLong("db.retry.base.delay.ms", 50));
+        long cap = Math.min(config.getLong("db.retry.max.delay.ms", 2000), base << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+}
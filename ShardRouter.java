@@ -0,0 +1,182 @@
+package com.library.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Maps branches to databases. A branch listed in shard.branches with a shard.&lt;id&gt;.url
+ * has its own database (with its own pool); every other branch lives in the home
+ * database behind {@link DatabaseConnection}. Cross-branch reads fan out to every
+ * database in parallel and merge the per-shard results.
+ *
+ * Each database numbers its rows independently, so ids are only meaningful within one.
+ * This instance therefore writes and looks up by id in the home database only; branches
+ * with their own database are managed there, and reach this one through title searches
+ * and inter-branch transfers.
+ */
+public class ShardRouter {
+
+    public static final int DEFAULT_BRANCH_ID = 1;
+
+    private static final ShardRouter INSTANCE = new ShardRouter();
+
+    public interface ShardQuery<T> {
+        List<T> run(Connection conn) throws SQLException;
+    }
+
+    private final Map<Integer, ConnectionPool> branchPools = new LinkedHashMap<>();
+    private ExecutorService scatterPool;
+
+    private ShardRouter() {
+        LibraryConfig config = LibraryConfig.get();
+        for (String id : config.getString("shard.branches", "").split(",")) {
+            if (id.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                int branchId = Integer.parseInt(id.trim());
+                String url = config.getString("shard." + branchId + ".url", "");
+                if (!url.isEmpty()) {
+                    branchPools.put(branchId, new ConnectionPool("branch-" + branchId, url));
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid branch id in shard.branches: " + id);
+            }
+        }
+    }
+
+    public static ShardRouter get() {
+        return INSTANCE;
+    }
+
+    public boolean isSharded() {
+        return !branchPools.isEmpty();
+    }
+
+    // Primary connection to the database holding the branch
+    public Connection getConnection(int branchId) throws SQLException {
+        ConnectionPool pool = branchPools.get(branchId);
+        return pool != null ? pool.getConnection() : DatabaseConnection.getConnection();
+    }
+
+    public boolean hasOwnDatabase(int branchId) {
+        return branchPools.containsKey(branchId);
+    }
+
+    /**
+     * Runs the query against the home database and every branch database in parallel.
+     * A shard that fails is reported and left out, so callers still get the others.
+     */
+    public <T> List<List<T>> scatter(ShardQuery<T> query) {
+        if (!isSharded()) {
+            try (Connection conn = DatabaseConnection.getReadConnection()) {
+                return Collections.singletonList(query.run(conn));
+            } catch (SQLException e) {
+                System.err.println("Error querying home database: " + e.getMessage());
+                e.printStackTrace();
+                return Collections.emptyList();
+            }
+        }
+
+        List<String> names = new ArrayList<>();
+        List<Future<List<T>>> futures = new ArrayList<>();
+        ExecutorService executor = executor();
+        // The shard queries run on pool threads but share the caller's time budget
+        long budget = Deadline.remainingMillis();
+        long budgetMillis = budget == Deadline.NONE ? 0 : Math.max(1, budget);
+        names.add("home");
+        futures.add(executor.submit(() -> {
+            Deadline.Scope scope = Deadline.start(budgetMillis);
+            try (Connection conn = DatabaseConnection.getReadConnection()) {
+                return query.run(conn);
+            } finally {
+                scope.close();
+            }
+        }));
+        for (Map.Entry<Integer, ConnectionPool> entry : branchPools.entrySet()) {
+            names.add("branch " + entry.getKey());
+            futures.add(executor.submit(() -> {
+                Deadline.Scope scope = Deadline.start(budgetMillis);
+                try (Connection conn = entry.getValue().getConnection()) {
+                    return query.run(conn);
+                } finally {
+                    scope.close();
+                }
+            }));
+        }
+
+        List<List<T>> results = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                System.err.println("Error querying " + names.get(i) + " database: " + e.getCause().getMessage());
+                e.getCause().printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return results;
+    }
+
+    // Merges lists that are each sorted by the comparator into one sorted list
+    public static <T> List<T> mergeSorted(List<List<T>> sortedLists, Comparator<? super T> order) {
+        if (sortedLists.size() == 1) {
+            return sortedLists.get(0);
+        }
+        // Heap entries are { list index, position in list }
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, sortedLists.size()),
+                (a, b) -> order.compare(sortedLists.get(a[0]).get(a[1]), sortedLists.get(b[0]).get(b[1])));
+        int total = 0;
+        for (int i = 0; i < sortedLists.size(); i++) {
+            total += sortedLists.get(i).size();
+            if (!sortedLists.get(i).isEmpty()) {
+                heads.add(new int[] { i, 0 });
+            }
+        }
+
+        List<T> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<T> list = sortedLists.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (head[1] + 1 < list.size()) {
+                heads.add(new int[] { head[0], head[1] + 1 });
+            }
+        }
+        return merged;
+    }
+
+    public synchronized void shutdown() {
+        if (scatterPool != null) {
+            scatterPool.shutdownNow();
+            scatterPool = null;
+        }
+        for (ConnectionPool pool : branchPools.values()) {
+            pool.shutdown();
+        }
+    }
+
+    private synchronized ExecutorService executor() {
+        if (scatterPool == null) {
+            scatterPool = Executors.newFixedThreadPool(branchPools.size() + 1, r -> {
+                Thread t = new Thread(r, "shard-scatter");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return scatterPool;
+    }
+}
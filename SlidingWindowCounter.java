@@ -0,0 +1,65 @@
+package com.library.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Event counter over a sliding time window, kept as a ring of fixed-width buckets.
+ * Increments are lock-free; a bucket is lazily reset the first time it is reused for a
+ * newer time slot. Reading sums the buckets that still fall inside the window, so its
+ * cost depends only on the bucket count. Counts racing with a bucket reset may be lost,
+ * which is acceptable for dashboard figures.
+ */
+public class SlidingWindowCounter {
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray slots;
+
+    public SlidingWindowCounter(long windowMillis, int bucketCount) {
+        this.bucketMillis = Math.max(1, windowMillis / bucketCount);
+        this.bucketCount = bucketCount;
+        this.counts = new AtomicLongArray(bucketCount);
+        this.slots = new AtomicLongArray(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            slots.set(i, -1);
+        }
+    }
+
+    public void increment() {
+        add(System.currentTimeMillis(), 1);
+    }
+
+    public void add(long timeMillis, long delta) {
+        long slot = timeMillis / bucketMillis;
+        int index = (int) (slot % bucketCount);
+
+        long current = slots.get(index);
+        if (current != slot) {
+            if (current > slot) {
+                return; // older than the window, drop it
+            }
+            if (slots.compareAndSet(index, current, slot)) {
+                counts.set(index, 0);
+            }
+        }
+        counts.addAndGet(index, delta);
+    }
+
+    public long sum() {
+        return sum(System.currentTimeMillis());
+    }
+
+    public long sum(long nowMillis) {
+        long newest = nowMillis / bucketMillis;
+        long oldest = newest - bucketCount + 1;
+        long total = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            long slot = slots.get(i);
+            if (slot >= oldest && slot <= newest) {
+                total += counts.get(i);
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,65 @@
+package com.library.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy-hitters sketch over integer ids. Tracks at most {@code capacity}
+ * counters no matter how many distinct ids are offered; when full, a new id takes over
+ * the smallest counter and inherits its count. Any id whose true frequency exceeds
+ * total / capacity is guaranteed to be tracked, and reported counts overestimate the
+ * true count by at most the smallest counter.
+ */
+public class SpaceSavingSketch {
+
+    private final int capacity;
+    private final int[] ids;
+    private final long[] counts;
+    private final Map<Integer, Integer> slots;
+    private int size;
+
+    public SpaceSavingSketch(int capacity) {
+        this.capacity = capacity;
+        this.ids = new int[capacity];
+        this.counts = new long[capacity];
+        this.slots = new HashMap<>(capacity * 2);
+    }
+
+    public synchronized void offer(int id) {
+        offer(id, 1);
+    }
+
+    public synchronized void offer(int id, long count) {
+        Integer slot = slots.get(id);
+        if (slot != null) {
+            counts[slot] += count;
+            return;
+        }
+
+        if (size < capacity) {
+            ids[size] = id;
+            counts[size] = count;
+            slots.put(id, size);
+            size++;
+            return;
+        }
+
+        int min = 0;
+        for (int i = 1; i < size; i++) {
+            if (counts[i] < counts[min]) {
+                min = i;
+            }
+        }
+        slots.remove(ids[min]);
+        ids[min] = id;
+        counts[min] += count;
+        slots.put(id, min);
+    }
+
+    // Adds this sketch's counters into {@code totals}, keyed by id
+    public synchronized void addTo(Map<Integer, Long> totals) {
+        for (int i = 0; i < size; i++) {
+            totals.merge(ids[i], counts[i], Long::sum);
+        }
+    }
+}
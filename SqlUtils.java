@@ -0,0 +1,33 @@
+package com.library.util;
+
+public final class SqlUtils {
+
+    private SqlUtils() {
+    }
+
+    // "?, ?, ?" for building IN (...) lists of the given size
+    public static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append('?');
+        }
+        return sb.toString();
+    }
+
+    // "a = ?, c = ?" for the columns whose bit is set in the mask, in column order
+    public static String assignments(String[] columns, int mask) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(columns[i]).append(" = ?");
+            }
+        }
+        return sb.toString();
+    }
+}
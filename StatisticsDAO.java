@@ -0,0 +1,113 @@
+package com.library.dao;
+
+import com.library.util.DatabaseConnection;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One-off aggregate queries used to seed the in-memory circulation statistics on startup.
+ * After that the statistics are maintained from borrow/return events.
+ */
+public class StatisticsDAO {
+
+    // Hot and archived loans together, for all-time totals
+    private static final String ALL_LOANS = "SELECT book_id, user_id FROM transactions " +
+            "UNION ALL SELECT book_id, user_id FROM transactions_archive";
+
+    public interface LoanHandler {
+        void onLoan(int bookId, String title, String category, LocalDate borrowDate);
+    }
+
+    public Map<String, Long> getLoanCountsByCategory() {
+        String sql = "SELECT b.category, COUNT(*) as loans FROM (" + ALL_LOANS + ") t " +
+                "JOIN books b ON t.book_id = b.book_id GROUP BY b.category";
+        return queryCounts(sql, "Error retrieving loan counts by category: ");
+    }
+
+    public Map<String, Long> getLoanCountsByMembershipType() {
+        String sql = "SELECT u.membership_type, COUNT(*) as loans FROM (" + ALL_LOANS + ") t " +
+                "JOIN users u ON t.user_id = u.user_id GROUP BY u.membership_type";
+        return queryCounts(sql, "Error retrieving loan counts by membership type: ");
+    }
+
+    public Map<LocalDate, Long> getLoanCountsByDay(LocalDate since) {
+        Map<LocalDate, Long> counts = new HashMap<>();
+        String sql = "SELECT borrow_date, COUNT(*) as loans FROM transactions " +
+                "WHERE borrow_date >= ? GROUP BY borrow_date";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setDate(1, Date.valueOf(since));
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                counts.put(rs.getDate("borrow_date").toLocalDate(), rs.getLong("loans"));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving loan counts by day: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return counts;
+    }
+
+    // Streams every loan borrowed on or after the given date, oldest first, to the handler
+    public void scanLoansSince(LocalDate since, LoanHandler handler) {
+        String sql = "SELECT t.book_id, b.title, b.category, t.borrow_date FROM transactions t " +
+                "JOIN books b ON t.book_id = b.book_id WHERE t.borrow_date >= ? ORDER BY t.borrow_date";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setDate(1, Date.valueOf(since));
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                handler.onLoan(rs.getInt("book_id"), rs.getString("title"), rs.getString("category"),
+                        rs.getDate("borrow_date").toLocalDate());
+            }
+        } catch (SQLException e) {
+            System.err.println("Error scanning recent loans: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // { total copies, copies on loan }
+    public long[] getCopyTotals() {
+        String sql = "SELECT COALESCE(SUM(total_copies), 0) as total, " +
+                "COALESCE(SUM(total_copies - available_copies), 0) as on_loan FROM books";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+
+            if (rs.next()) {
+                return new long[] { rs.getLong("total"), rs.getLong("on_loan") };
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving copy totals: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return new long[] { 0, 0 };
+    }
+
+    private Map<String, Long> queryCounts(String sql, String errorMessage) {
+        Map<String, Long> counts = new HashMap<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                counts.put(rs.getString(1), rs.getLong("loans"));
+            }
+        } catch (SQLException e) {
+            System.err.println(errorMessage + e.getMessage());
+            e.printStackTrace();
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,29 @@
+package com.library.service;
+
+/**
+ * A book and how many times it was borrowed, as reported by the popularity rankings.
+ */
+public class TitleCount {
+
+    private final int bookId;
+    private final String title;
+    private final long count;
+
+    public TitleCount(int bookId, String title, long count) {
+        this.bookId = bookId;
+        this.title = title;
+        this.count = count;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -1,7 +1,9 @@
 package com.library.model;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Objects;
 
 public class Transaction {
 
@@ -9,13 +11,18 @@ public class Transaction {
         BORROWED, RETURNED, OVERDUE
     }
 
+    // Columns an UPDATE can write; setters record which of them changed since load
+    public enum Field {
+        DUE_DATE, RETURN_DATE, FINE_AMOUNT, STATUS
+    }
+
     private int transactionId;
     private int bookId;
     private int userId;
     private LocalDate borrowDate;
     private LocalDate dueDate;
     private LocalDate returnDate;
-    private double fineAmount;
+    private BigDecimal fineAmount = BigDecimal.ZERO;
     private TransactionStatus status;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
@@ -24,6 +31,12 @@ public class Transaction {
     private String bookTitle;
     private String userName;
 
+    // Fine policy inputs, only loaded by queries that need them
+    private String bookCategory;
+    private User.MembershipType membershipType;
+
+    private int dirtyFields;
+
     // Constructors
     public Transaction() {
     }
@@ -35,7 +48,26 @@ public class Transaction {
         this.borrowDate = borrowDate;
         this.dueDate = dueDate;
         this.status = status;
-        this.fineAmount = 0.0;
+        this.fineAmount = BigDecimal.ZERO;
+    }
+
+    // Copies every field, e.g. to keep a before-image while the original is updated
+    public Transaction(Transaction other) {
+        this.transactionId = other.transactionId;
+        this.bookId = other.bookId;
+        this.userId = other.userId;
+        this.borrowDate = other.borrowDate;
+        this.dueDate = other.dueDate;
+        this.returnDate = other.returnDate;
+        this.fineAmount = other.fineAmount;
+        this.status = other.status;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.bookTitle = other.bookTitle;
+        this.userName = other.userName;
+        this.bookCategory = other.bookCategory;
+        this.membershipType = other.membershipType;
+        this.dirtyFields = other.dirtyFields;
     }
 
     // Getters and Setters
@@ -76,6 +108,7 @@ public class Transaction {
     }
 
     public void setDueDate(LocalDate dueDate) {
+        markDirty(Field.DUE_DATE, this.dueDate, dueDate);
         this.dueDate = dueDate;
     }
 
@@ -84,14 +117,19 @@ public class Transaction {
     }
 
     public void setReturnDate(LocalDate returnDate) {
+        markDirty(Field.RETURN_DATE, this.returnDate, returnDate);
         this.returnDate = returnDate;
     }
 
-    public double getFineAmount() {
+    public BigDecimal getFineAmount() {
         return fineAmount;
     }
 
-    public void setFineAmount(double fineAmount) {
+    public void setFineAmount(BigDecimal fineAmount) {
+        if (this.fineAmount == null || fineAmount == null
+                ? this.fineAmount != fineAmount : this.fineAmount.compareTo(fineAmount) != 0) {
+            dirtyFields |= 1 << Field.FINE_AMOUNT.ordinal();
+        }
         this.fineAmount = fineAmount;
     }
 
@@ -100,6 +138,7 @@ public class Transaction {
     }
 
     public void setStatus(TransactionStatus status) {
+        markDirty(Field.STATUS, this.status, status);
         this.status = status;
     }
 
@@ -135,6 +174,44 @@ public class Transaction {
         this.userName = userName;
     }
 
+    public String getBookCategory() {
+        return bookCategory;
+    }
+
+    public void setBookCategory(String bookCategory) {
+        this.bookCategory = bookCategory;
+    }
+
+    public User.MembershipType getMembershipType() {
+        return membershipType;
+    }
+
+    public void setMembershipType(User.MembershipType membershipType) {
+        this.membershipType = membershipType;
+    }
+
+    // ==================== Dirty tracking ====================
+
+    // Bitmask of Field ordinals
+    public int getDirtyFields() {
+        return dirtyFields;
+    }
+
+    public boolean isDirty(Field field) {
+        return (dirtyFields & (1 << field.ordinal())) != 0;
+    }
+
+    // Called once the current values match the database row
+    public void clearDirty() {
+        dirtyFields = 0;
+    }
+
+    private void markDirty(Field field, Object oldValue, Object newValue) {
+        if (!Objects.equals(oldValue, newValue)) {
+            dirtyFields |= 1 << field.ordinal();
+        }
+    }
+
     @Override
     public String toString() {
         return String.format(
@@ -0,0 +1,89 @@
+package com.library.service;
+
+import com.library.dao.TransactionDAO;
+import com.library.events.ChangeEventBus;
+import com.library.util.DatabaseConnection;
+import com.library.util.LibraryConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Moves RETURNED transactions older than the retention period from the transactions
+ * table into transactions_archive, one chunk per DB transaction so locks stay short.
+ * Archived rows are only read when full history is asked for. A run that stops part way
+ * simply continues with the remaining rows next time.
+ */
+public class TransactionArchiver {
+
+    public static final int DEFAULT_RETENTION_MONTHS = 12;
+
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final TransactionDAO transactionDAO;
+    private final int retentionMonths;
+
+    public TransactionArchiver(TransactionDAO transactionDAO) {
+        this(transactionDAO, LibraryConfig.get().getInt("archive.months", DEFAULT_RETENTION_MONTHS));
+    }
+
+    public TransactionArchiver(TransactionDAO transactionDAO, int retentionMonths) {
+        this.transactionDAO = transactionDAO;
+        this.retentionMonths = retentionMonths;
+    }
+
+    public int getRetentionMonths() {
+        return retentionMonths;
+    }
+
+    /**
+     * Archives loans returned more than the retention period before {@code asOf}.
+     * Returns the number of transactions moved, or -1 if the run failed.
+     */
+    public synchronized int archive(LocalDate asOf) {
+        LocalDate cutoff = asOf.minusMonths(retentionMonths);
+        int archived = 0;
+        int chunkSize = LibraryConfig.get().getInt("batch.archive.chunk.size", DEFAULT_CHUNK_SIZE);
+
+        while (true) {
+            Connection conn = null;
+            try {
+                conn = DatabaseConnection.getConnection();
+                conn.setAutoCommit(false);
+
+                List<Integer> chunk = transactionDAO.lockArchivableIds(conn, cutoff, chunkSize);
+                if (chunk.isEmpty()) {
+                    conn.commit();
+                    break;
+                }
+                transactionDAO.archiveTransactions(conn, chunk);
+                conn.commit();
+                ChangeEventBus.getInstance().publishStaged();
+                archived += chunk.size();
+            } catch (SQLException e) {
+                rollback(conn);
+                System.err.println("Error archiving transactions returned before " + cutoff + ": " + e.getMessage());
+                e.printStackTrace();
+                return -1;
+            } finally {
+                ChangeEventBus.getInstance().discardStaged();
+                DatabaseConnection.closeConnection(conn);
+            }
+        }
+
+        System.out.println("Archived " + archived + " transaction(s) returned before " + cutoff + ".");
+        return archived;
+    }
+
+    private static void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                System.err.println("Error rolling back transaction: " + e.getMessage());
+            }
+        }
+    }
+}
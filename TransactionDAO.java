@@ -1,17 +1,55 @@
 package com.library.dao;
 
+import com.library.events.ChangeEvent;
+import com.library.events.ChangeEventBus;
 import com.library.model.Transaction;
+import com.library.model.User;
+import com.library.util.ColumnIndex;
 import com.library.util.DatabaseConnection;
+import com.library.util.ResilientExecutor;
+import com.library.util.SqlUtils;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class TransactionDAO {
 
-    private static final double FINE_PER_DAY = 5.0; // Fine amount per day for overdue books
+    // Archived rows keep no foreign keys, so books/users are LEFT JOINed for display
+    private static final String ARCHIVE_SELECT = "SELECT a.transaction_id, a.book_id, a.user_id, " +
+            "a.borrow_date, a.due_date, a.return_date, a.fine_amount, a.status, a.created_at, a.updated_at, " +
+            "b.title as book_title, u.name as user_name " +
+            "FROM transactions_archive a " +
+            "LEFT JOIN books b ON a.book_id = b.book_id " +
+            "LEFT JOIN users u ON a.user_id = u.user_id ";
+
+    private final FineLedgerDAO fineLedgerDAO = new FineLedgerDAO();
+    private final ChangeEventBus events = ChangeEventBus.getInstance();
+    private final ResilientExecutor resilience = ResilientExecutor.get();
+
+    // Column of each Transaction.Field, by ordinal
+    private static final String[] UPDATE_COLUMNS = { "due_date", "return_date", "fine_amount", "status" };
+
+    // UPDATE statement per combination of dirty fields, built on first use
+    private static final ConcurrentHashMap<Integer, String> UPDATE_SQL = new ConcurrentHashMap<>();
+
+    // Columns read by extractTransactionFromResultSet, named after their labels
+    private enum Column {
+        TRANSACTION_ID, BOOK_ID, USER_ID, BORROW_DATE, DUE_DATE, RETURN_DATE, FINE_AMOUNT, STATUS, BOOK_TITLE,
+        USER_NAME, CREATED_AT, UPDATED_AT
+    }
+
+    private static final ColumnIndex<Column> COLUMNS = new ColumnIndex<>(Column.class);
 
     public boolean createTransaction(Transaction transaction) {
         String sql = "INSERT INTO transactions (book_id, user_id, borrow_date, due_date, status) " +
@@ -32,9 +70,12 @@ public class TransactionDAO {
                 try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         transaction.setTransactionId(generatedKeys.getInt(1));
+                        transaction.clearDirty();
                     }
                 }
                 System.out.println("Transaction created successfully!");
+                events.publish(ChangeEvent.inserted(Transaction.class, transaction.getTransactionId(),
+                        new Transaction(transaction)));
                 return true;
             }
         } catch (SQLException e) {
@@ -44,6 +85,7 @@ public class TransactionDAO {
         return false;
     }
 
+    // Null if there is no such transaction; throws DataAccessException if the lookup itself fails
     public Transaction getTransactionById(int transactionId) {
         String sql = "SELECT t.*, b.title as book_title, u.name as user_name " +
                 "FROM transactions t " +
@@ -51,20 +93,16 @@ public class TransactionDAO {
                 "JOIN users u ON t.user_id = u.user_id " +
                 "WHERE t.transaction_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        return resilience.execute("load transaction " + transactionId, () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                    PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setInt(1, transactionId);
-            ResultSet rs = pstmt.executeQuery();
+                pstmt.setInt(1, transactionId);
+                ResultSet rs = pstmt.executeQuery();
 
-            if (rs.next()) {
-                return extractTransactionFromResultSet(rs);
+                return rs.next() ? extractTransactionFromResultSet(rs) : null;
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving transaction: " + e.getMessage());
-            e.printStackTrace();
-        }
-        return null;
+        });
     }
 
     public List<Transaction> getAllTransactions() {
@@ -75,7 +113,7 @@ public class TransactionDAO {
                 "JOIN users u ON t.user_id = u.user_id " +
                 "ORDER BY t.transaction_id DESC";
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
                 Statement stmt = conn.createStatement();
                 ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -90,17 +128,28 @@ public class TransactionDAO {
     }
 
     public List<Transaction> getTransactionsByUserId(int userId) {
+        return getTransactionsByUserId(userId, false);
+    }
+
+    // With includeArchived, archived transactions are merged in, newest first
+    public List<Transaction> getTransactionsByUserId(int userId, boolean includeArchived) {
         List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT t.*, b.title as book_title, u.name as user_name " +
+        String sql = "SELECT t.transaction_id, t.book_id, t.user_id, t.borrow_date, t.due_date, t.return_date, " +
+                "t.fine_amount, t.status, t.created_at, t.updated_at, b.title as book_title, u.name as user_name " +
                 "FROM transactions t " +
                 "JOIN books b ON t.book_id = b.book_id " +
                 "JOIN users u ON t.user_id = u.user_id " +
-                "WHERE t.user_id = ? ORDER BY t.transaction_id DESC";
+                "WHERE t.user_id = ?" +
+                (includeArchived ? " UNION ALL " + ARCHIVE_SELECT + "WHERE a.user_id = ?" : "") +
+                " ORDER BY transaction_id DESC";
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, userId);
+            if (includeArchived) {
+                pstmt.setInt(2, userId);
+            }
             ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
@@ -114,17 +163,28 @@ public class TransactionDAO {
     }
 
     public List<Transaction> getTransactionsByBookId(int bookId) {
+        return getTransactionsByBookId(bookId, false);
+    }
+
+    // With includeArchived, archived transactions are merged in, newest first
+    public List<Transaction> getTransactionsByBookId(int bookId, boolean includeArchived) {
         List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT t.*, b.title as book_title, u.name as user_name " +
+        String sql = "SELECT t.transaction_id, t.book_id, t.user_id, t.borrow_date, t.due_date, t.return_date, " +
+                "t.fine_amount, t.status, t.created_at, t.updated_at, b.title as book_title, u.name as user_name " +
                 "FROM transactions t " +
                 "JOIN books b ON t.book_id = b.book_id " +
                 "JOIN users u ON t.user_id = u.user_id " +
-                "WHERE t.book_id = ? ORDER BY t.transaction_id DESC";
+                "WHERE t.book_id = ?" +
+                (includeArchived ? " UNION ALL " + ARCHIVE_SELECT + "WHERE a.book_id = ?" : "") +
+                " ORDER BY transaction_id DESC";
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, bookId);
+            if (includeArchived) {
+                pstmt.setInt(2, bookId);
+            }
             ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
@@ -169,15 +229,21 @@ public class TransactionDAO {
                 "FROM transactions t " +
                 "JOIN books b ON t.book_id = b.book_id " +
                 "JOIN users u ON t.user_id = u.user_id " +
-                "WHERE t.status = 'OVERDUE' OR (t.status = 'BORROWED' AND t.due_date < CURDATE()) " +
-                "ORDER BY t.due_date";
+                "WHERE (t.status = 'OVERDUE' OR (t.status = 'BORROWED' AND t.due_date < CURDATE())) " +
+                "AND t.borrow_date >= ? ORDER BY t.due_date";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            LocalDate oldestOpen = getOldestOpenBorrowDate(conn);
+            if (oldestOpen == null) {
+                return transactions;
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setDate(1, Date.valueOf(oldestOpen));
+                ResultSet rs = pstmt.executeQuery();
 
-            while (rs.next()) {
-                transactions.add(extractTransactionFromResultSet(rs));
+                while (rs.next()) {
+                    transactions.add(extractTransactionFromResultSet(rs));
+                }
             }
         } catch (SQLException e) {
             System.err.println("Error retrieving overdue transactions: " + e.getMessage());
@@ -186,39 +252,100 @@ public class TransactionDAO {
         return transactions;
     }
 
+    /**
+     * Updates the transaction and applies the change in its fine to the user's
+     * fine ledger in the same DB transaction.
+     */
     public boolean updateTransactionStatus(int transactionId, Transaction.TransactionStatus status,
-            LocalDate returnDate, double fineAmount) {
-        String sql = "UPDATE transactions SET status = ?, return_date = ?, fine_amount = ? " +
+            LocalDate returnDate, BigDecimal fineAmount) {
+        String selectSql = "SELECT t.*, NULL as book_title, NULL as user_name FROM transactions t " +
+                "WHERE t.transaction_id = ? FOR UPDATE";
+        String updateSql = "UPDATE transactions SET status = ?, return_date = ?, fine_amount = ? " +
                 "WHERE transaction_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, status.name());
-            pstmt.setDate(2, returnDate != null ? Date.valueOf(returnDate) : null);
-            pstmt.setDouble(3, fineAmount);
-            pstmt.setInt(4, transactionId);
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            Transaction before;
+            try (PreparedStatement pstmt = conn.prepareStatement(selectSql)) {
+                pstmt.setInt(1, transactionId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.rollback();
+                        return false;
+                    }
+                    before = extractTransactionFromResultSet(rs);
+                }
+            }
 
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                System.out.println("Transaction updated successfully!");
-                return true;
+            try (PreparedStatement pstmt = conn.prepareStatement(updateSql)) {
+                pstmt.setString(1, status.name());
+                pstmt.setDate(2, returnDate != null ? Date.valueOf(returnDate) : null);
+                pstmt.setBigDecimal(3, fineAmount);
+                pstmt.setInt(4, transactionId);
+                pstmt.executeUpdate();
             }
+
+            fineLedgerDAO.addFine(conn, before.getUserId(), fineAmount.subtract(before.getFineAmount()));
+            conn.commit();
+            System.out.println("Transaction updated successfully!");
+
+            Transaction after = new Transaction(before);
+            after.setStatus(status);
+            after.setReturnDate(returnDate);
+            after.setFineAmount(fineAmount);
+            events.publish(ChangeEvent.updated(Transaction.class, transactionId, before, after));
+            return true;
         } catch (SQLException e) {
+            rollback(conn);
             System.err.println("Error updating transaction: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            DatabaseConnection.closeConnection(conn);
         }
         return false;
     }
 
     public int markOverdueTransactions() {
-        String sql = "UPDATE transactions SET status = 'OVERDUE' " +
-                "WHERE status = 'BORROWED' AND due_date < CURDATE()";
+        String where = "WHERE status = 'BORROWED' AND due_date < CURDATE() AND borrow_date >= ?";
+        String selectSql = "SELECT transaction_id FROM transactions " + where + " FOR UPDATE";
+        String sql = "UPDATE transactions SET status = 'OVERDUE' " + where;
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            LocalDate oldestOpen = getOldestOpenBorrowDate(conn);
+            if (oldestOpen == null) {
+                return 0;
+            }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-                Statement stmt = conn.createStatement()) {
+            // Ids are only needed for change events; skip the extra read when nobody listens
+            boolean publish = events.hasSubscribers();
+            List<Integer> ids = new ArrayList<>();
+            if (publish) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement pstmt = conn.prepareStatement(selectSql)) {
+                    pstmt.setDate(1, Date.valueOf(oldestOpen));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getInt("transaction_id"));
+                        }
+                    }
+                }
+            }
 
-            int affectedRows = stmt.executeUpdate(sql);
+            int affectedRows;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setDate(1, Date.valueOf(oldestOpen));
+                affectedRows = pstmt.executeUpdate();
+            }
+            if (publish) {
+                conn.commit();
+                conn.setAutoCommit(true);
+                for (int id : ids) {
+                    events.publish(ChangeEvent.updated(Transaction.class, id, null, null));
+                }
+            }
             if (affectedRows > 0) {
                 System.out.println(affectedRows + " transaction(s) marked as overdue.");
             }
@@ -230,35 +357,30 @@ public class TransactionDAO {
         return 0;
     }
 
-    public double calculateFine(LocalDate dueDate, LocalDate returnDate) {
-        if (returnDate == null) {
-            returnDate = LocalDate.now();
-        }
+    /**
+     * True if any copy of the book is still out. Stops at the first open loan via the
+     * (book_id, status) index. Throws DataAccessException if the check itself fails, so
+     * a database error is not mistaken for an open loan.
+     */
+    public boolean hasActiveBorrowingsForBook(int bookId) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM transactions " +
+                "WHERE book_id = ? AND status IN ('BORROWED', 'OVERDUE'))";
 
-        if (returnDate.isAfter(dueDate)) {
-            long daysOverdue = ChronoUnit.DAYS.between(dueDate, returnDate);
-            return daysOverdue * FINE_PER_DAY;
-        }
-        return 0.0;
-    }
-
-    public double getTotalFinesByUserId(int userId) {
-        String sql = "SELECT SUM(fine_amount) as total_fine FROM transactions WHERE user_id = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        return resilience.execute("check active borrowings for book " + bookId, () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                    PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
+                pstmt.setInt(1, bookId);
+                ResultSet rs = pstmt.executeQuery();
 
-            if (rs.next()) {
-                return rs.getDouble("total_fine");
+                return rs.next() && rs.getBoolean(1);
             }
-        } catch (SQLException e) {
-            System.err.println("Error calculating total fines: " + e.getMessage());
-            e.printStackTrace();
-        }
-        return 0.0;
+        });
+    }
+
+    // Reads the maintained fine ledger rather than summing the user's history
+    public BigDecimal getTotalFinesByUserId(int userId) {
+        return fineLedgerDAO.getTotalFines(userId);
     }
 
     public boolean hasActiveBorrowing(int userId, int bookId) {
@@ -282,44 +404,373 @@ public class TransactionDAO {
         return false;
     }
 
+    // ==================== Bulk operations (caller owns the DB transaction) ====================
+
+    // The subset of the given books that still have copies out on loan
+    public Set<Integer> getBookIdsWithActiveBorrowings(Connection conn, Collection<Integer> bookIds)
+            throws SQLException {
+        Set<Integer> active = new HashSet<>();
+        if (bookIds.isEmpty()) {
+            return active;
+        }
+        String sql = "SELECT DISTINCT book_id FROM transactions WHERE book_id IN (" +
+                SqlUtils.placeholders(bookIds.size()) + ") AND status IN ('BORROWED', 'OVERDUE')";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (int bookId : bookIds) {
+                pstmt.setInt(index++, bookId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    active.add(rs.getInt("book_id"));
+                }
+            }
+        }
+        return active;
+    }
+
+    public Set<Integer> getActiveBorrowedBookIds(Connection conn, int userId) throws SQLException {
+        Set<Integer> bookIds = new HashSet<>();
+        String sql = "SELECT book_id FROM transactions WHERE user_id = ? AND status IN ('BORROWED', 'OVERDUE')";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    bookIds.add(rs.getInt("book_id"));
+                }
+            }
+        }
+        return bookIds;
+    }
+
+    public void createTransactions(Connection conn, List<Transaction> transactions) throws SQLException {
+        String sql = "INSERT INTO transactions (book_id, user_id, borrow_date, due_date, status) " +
+                "VALUES (?, ?, ?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (Transaction transaction : transactions) {
+                pstmt.setInt(1, transaction.getBookId());
+                pstmt.setInt(2, transaction.getUserId());
+                pstmt.setDate(3, Date.valueOf(transaction.getBorrowDate()));
+                pstmt.setDate(4, Date.valueOf(transaction.getDueDate()));
+                pstmt.setString(5, transaction.getStatus().name());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                for (Transaction transaction : transactions) {
+                    if (!generatedKeys.next()) {
+                        break;
+                    }
+                    transaction.setTransactionId(generatedKeys.getInt(1));
+                    transaction.clearDirty();
+                }
+            }
+            for (Transaction transaction : transactions) {
+                events.stage(ChangeEvent.inserted(Transaction.class, transaction.getTransactionId(),
+                        new Transaction(transaction)));
+            }
+        }
+    }
+
+    /**
+     * Loads and row-locks the given transactions (without the display joins).
+     * Must be called with auto-commit disabled.
+     */
+    public Map<Integer, Transaction> lockTransactions(Connection conn, Collection<Integer> transactionIds)
+            throws SQLException {
+        Map<Integer, Transaction> transactions = new HashMap<>();
+        if (transactionIds.isEmpty()) {
+            return transactions;
+        }
+        String sql = "SELECT t.*, NULL as book_title, NULL as user_name FROM transactions t " +
+                "WHERE t.transaction_id IN (" + SqlUtils.placeholders(transactionIds.size()) + ") FOR UPDATE";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (int transactionId : transactionIds) {
+                pstmt.setInt(index++, transactionId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Transaction transaction = extractTransactionFromResultSet(rs);
+                    transactions.put(transaction.getTransactionId(), transaction);
+                }
+            }
+        }
+        return transactions;
+    }
+
+    // Writes the fields changed since each transaction was read, one batch per combination
+    // of changed fields. The caller is responsible for applying the fine deltas to the fine ledger.
+    public void updateTransactions(Connection conn, List<Transaction> transactions) throws SQLException {
+        Map<Integer, List<Transaction>> byDirtyFields = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            if (transaction.getDirtyFields() != 0) {
+                byDirtyFields.computeIfAbsent(transaction.getDirtyFields(), k -> new ArrayList<>()).add(transaction);
+            }
+        }
+
+        for (Map.Entry<Integer, List<Transaction>> shape : byDirtyFields.entrySet()) {
+            String sql = UPDATE_SQL.computeIfAbsent(shape.getKey(), fields -> "UPDATE transactions SET " +
+                    SqlUtils.assignments(UPDATE_COLUMNS, fields) + " WHERE transaction_id = ?");
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (Transaction transaction : shape.getValue()) {
+                    int index = 1;
+                    for (Transaction.Field field : Transaction.Field.values()) {
+                        if (transaction.isDirty(field)) {
+                            setField(pstmt, index++, transaction, field);
+                        }
+                    }
+                    pstmt.setInt(index, transaction.getTransactionId());
+                    pstmt.addBatch();
+                    events.stage(ChangeEvent.updated(Transaction.class, transaction.getTransactionId(), null,
+                            new Transaction(transaction)));
+                }
+                pstmt.executeBatch();
+            }
+        }
+        // Left dirty if the batch failed, so a retry writes the same fields
+        for (Transaction transaction : transactions) {
+            transaction.clearDirty();
+        }
+    }
+
+    /**
+     * Borrow date of the oldest loan still out, or null if none. Open-loan queries use it
+     * as a lower bound on borrow_date so a partitioned table only scans the partitions
+     * that can still hold open loans.
+     */
+    public LocalDate getOldestOpenBorrowDate(Connection conn) throws SQLException {
+        String sql = "SELECT MIN(borrow_date) FROM transactions WHERE status IN ('BORROWED', 'OVERDUE')";
+
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            Date oldest = rs.next() ? rs.getDate(1) : null;
+            return oldest != null ? oldest.toLocalDate() : null;
+        }
+    }
+
+    /**
+     * Next chunk of open loans with transaction_id greater than {@code afterId}, in id order,
+     * together with the book category and membership type the fine policy needs. The
+     * transaction rows stay locked until the caller commits.
+     */
+    public List<Transaction> lockOpenLoansAfter(Connection conn, int afterId, LocalDate borrowedSince, int limit)
+            throws SQLException {
+        List<Transaction> transactions = new ArrayList<>();
+        String sql = "SELECT t.*, b.title as book_title, u.name as user_name, " +
+                "b.category as book_category, u.membership_type as membership_type " +
+                "FROM transactions t " +
+                "JOIN books b ON t.book_id = b.book_id " +
+                "JOIN users u ON t.user_id = u.user_id " +
+                "WHERE t.status IN ('BORROWED', 'OVERDUE') AND t.transaction_id > ? AND t.borrow_date >= ? " +
+                "ORDER BY t.transaction_id LIMIT ? FOR UPDATE OF t";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, afterId);
+            pstmt.setDate(2, Date.valueOf(borrowedSince));
+            pstmt.setInt(3, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Transaction transaction = extractTransactionFromResultSet(rs);
+                    transaction.setBookCategory(rs.getString("book_category"));
+                    transaction.setMembershipType(User.MembershipType.valueOf(rs.getString("membership_type")));
+                    transactions.add(transaction);
+                }
+            }
+        }
+        return transactions;
+    }
+
+    // Writes accrued fine and status of open loans as a single batch
+    public void applyAccruedFines(Connection conn, List<Transaction> transactions) throws SQLException {
+        String sql = "UPDATE transactions SET fine_amount = ?, status = ? WHERE transaction_id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (Transaction transaction : transactions) {
+                pstmt.setBigDecimal(1, transaction.getFineAmount());
+                pstmt.setString(2, transaction.getStatus().name());
+                pstmt.setInt(3, transaction.getTransactionId());
+                pstmt.addBatch();
+                events.stage(ChangeEvent.updated(Transaction.class, transaction.getTransactionId(), null, null));
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    // ==================== Archival (caller owns the DB transaction) ====================
+
+    // Locks the next batch of RETURNED transactions returned before the cutoff
+    public List<Integer> lockArchivableIds(Connection conn, LocalDate returnedBefore, int limit)
+            throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        String sql = "SELECT transaction_id FROM transactions " +
+                "WHERE status = 'RETURNED' AND return_date < ? " +
+                "ORDER BY transaction_id LIMIT ? FOR UPDATE";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(returnedBefore));
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt("transaction_id"));
+                }
+            }
+        }
+        return ids;
+    }
+
+    // Copies the transactions into transactions_archive and deletes them from the hot table
+    public void archiveTransactions(Connection conn, List<Integer> transactionIds) throws SQLException {
+        if (transactionIds.isEmpty()) {
+            return;
+        }
+        String in = " WHERE transaction_id IN (" + SqlUtils.placeholders(transactionIds.size()) + ")";
+        String insertSql = "INSERT INTO transactions_archive (transaction_id, book_id, user_id, borrow_date, " +
+                "due_date, return_date, fine_amount, status, created_at, updated_at) " +
+                "SELECT transaction_id, book_id, user_id, borrow_date, due_date, return_date, fine_amount, " +
+                "status, created_at, updated_at FROM transactions" + in;
+        String deleteSql = "DELETE FROM transactions" + in;
+
+        try (PreparedStatement insert = conn.prepareStatement(insertSql);
+                PreparedStatement delete = conn.prepareStatement(deleteSql)) {
+            int index = 1;
+            for (int transactionId : transactionIds) {
+                insert.setInt(index, transactionId);
+                delete.setInt(index, transactionId);
+                index++;
+            }
+            insert.executeUpdate();
+            delete.executeUpdate();
+        }
+        for (int transactionId : transactionIds) {
+            events.stage(ChangeEvent.deleted(Transaction.class, transactionId, null));
+        }
+    }
+
+    // ==================== Analytics export ====================
+
+    // Database clock minus a lag, used as the exclusive upper bound of an export run
+    public Timestamp getDatabaseTime(Connection conn, int lagSeconds) throws SQLException {
+        String sql = "SELECT CURRENT_TIMESTAMP - INTERVAL ? SECOND";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, lagSeconds);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getTimestamp(1);
+            }
+        }
+    }
+
+    /**
+     * Streams transactions with from <= updated_at < to (no lower bound when {@code from}
+     * is null) in borrow_date, transaction_id order, with book category and membership
+     * type loaded. Uses a forward-only streaming cursor so the result set is never
+     * buffered; the handler must not use this connection.
+     */
+    public void scanChangedTransactions(Connection conn, Timestamp from, Timestamp to,
+            Consumer<Transaction> handler) throws SQLException {
+        String sql = "SELECT t.*, NULL as book_title, NULL as user_name, " +
+                "b.category as book_category, u.membership_type as membership_type " +
+                "FROM transactions t " +
+                "JOIN books b ON t.book_id = b.book_id " +
+                "JOIN users u ON t.user_id = u.user_id " +
+                "WHERE t.updated_at < ?" + (from != null ? " AND t.updated_at >= ?" : "") +
+                " ORDER BY t.borrow_date, t.transaction_id";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setTimestamp(1, to);
+            if (from != null) {
+                pstmt.setTimestamp(2, from);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Transaction transaction = extractTransactionFromResultSet(rs);
+                    transaction.setBookCategory(rs.getString("book_category"));
+                    transaction.setMembershipType(User.MembershipType.valueOf(rs.getString("membership_type")));
+                    handler.accept(transaction);
+                }
+            }
+        }
+    }
+
+    private void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                System.err.println("Error rolling back transaction: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void setField(PreparedStatement pstmt, int index, Transaction transaction,
+            Transaction.Field field) throws SQLException {
+        switch (field) {
+            case DUE_DATE:
+                pstmt.setDate(index, Date.valueOf(transaction.getDueDate()));
+                break;
+            case RETURN_DATE:
+                pstmt.setDate(index, transaction.getReturnDate() != null ? Date.valueOf(transaction.getReturnDate()) : null);
+                break;
+            case FINE_AMOUNT:
+                pstmt.setBigDecimal(index, transaction.getFineAmount());
+                break;
+            case STATUS:
+                pstmt.setString(index, transaction.getStatus().name());
+                break;
+        }
+    }
+
     private Transaction extractTransactionFromResultSet(ResultSet rs) throws SQLException {
+        ColumnIndex.Positions<Column> column = COLUMNS.of(rs);
         Transaction transaction = new Transaction();
-        transaction.setTransactionId(rs.getInt("transaction_id"));
-        transaction.setBookId(rs.getInt("book_id"));
-        transaction.setUserId(rs.getInt("user_id"));
+        transaction.setTransactionId(rs.getInt(column.of(Column.TRANSACTION_ID)));
+        transaction.setBookId(rs.getInt(column.of(Column.BOOK_ID)));
+        transaction.setUserId(rs.getInt(column.of(Column.USER_ID)));
 
-        Date borrowDate = rs.getDate("borrow_date");
+        Date borrowDate = rs.getDate(column.of(Column.BORROW_DATE));
         if (borrowDate != null) {
             transaction.setBorrowDate(borrowDate.toLocalDate());
         }
 
-        Date dueDate = rs.getDate("due_date");
+        Date dueDate = rs.getDate(column.of(Column.DUE_DATE));
         if (dueDate != null) {
             transaction.setDueDate(dueDate.toLocalDate());
         }
 
-        Date returnDate = rs.getDate("return_date");
+        Date returnDate = rs.getDate(column.of(Column.RETURN_DATE));
         if (returnDate != null) {
             transaction.setReturnDate(returnDate.toLocalDate());
         }
 
-        transaction.setFineAmount(rs.getDouble("fine_amount"));
-        transaction.setStatus(Transaction.TransactionStatus.valueOf(rs.getString("status")));
+        BigDecimal fineAmount = rs.getBigDecimal(column.of(Column.FINE_AMOUNT));
+        transaction.setFineAmount(fineAmount != null ? fineAmount : BigDecimal.ZERO);
+        transaction.setStatus(Transaction.TransactionStatus.valueOf(rs.getString(column.of(Column.STATUS))));
 
         // Additional fields
-        transaction.setBookTitle(rs.getString("book_title"));
-        transaction.setUserName(rs.getString("user_name"));
+        transaction.setBookTitle(rs.getString(column.of(Column.BOOK_TITLE)));
+        transaction.setUserName(rs.getString(column.of(Column.USER_NAME)));
 
-        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp createdAt = rs.getTimestamp(column.of(Column.CREATED_AT));
         if (createdAt != null) {
             transaction.setCreatedAt(createdAt.toLocalDateTime());
         }
 
-        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        Timestamp updatedAt = rs.getTimestamp(column.of(Column.UPDATED_AT));
         if (updatedAt != null) {
             transaction.setUpdatedAt(updatedAt.toLocalDateTime());
         }
 
+        transaction.clearDirty();
         return transaction;
     }
 }
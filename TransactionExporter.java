@@ -0,0 +1,169 @@
+package com.library.analytics;
+
+import com.library.dao.TransactionDAO;
+import com.library.model.Transaction;
+import com.library.util.DatabaseConnection;
+import com.library.util.LibraryConfig;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports transaction history into gzipped columnar segment files under
+ * {@code <exportDir>/transactions/<yyyy-MM>/}, partitioned by borrow month. Each run
+ * streams only the rows whose updated_at changed since the previous run, so a row can
+ * appear in several segments of its month; readers keep the copy from the highest run.
+ * Deleted transactions are not propagated.
+ */
+public class TransactionExporter {
+
+    public static final String DEFAULT_EXPORT_DIR = "analytics-export";
+    public static final String TABLE_DIR = "transactions";
+
+    private static final int SEGMENT_ROWS = 65536;
+
+    // Rows changed in the last minute wait for the next run, so commits still in flight
+    // with an earlier updated_at are not skipped by the watermark
+    private static final int SAFETY_LAG_SECONDS = 60;
+
+    private final TransactionDAO transactionDAO;
+    private final File exportDir;
+
+    public TransactionExporter(TransactionDAO transactionDAO) {
+        this(transactionDAO, new File(LibraryConfig.get().getString("export.dir", DEFAULT_EXPORT_DIR)));
+    }
+
+    public TransactionExporter(TransactionDAO transactionDAO, File exportDir) {
+        this.transactionDAO = transactionDAO;
+        this.exportDir = exportDir;
+    }
+
+    public File getExportDir() {
+        return exportDir;
+    }
+
+    /**
+     * Exports rows changed since the last run. Returns the number of rows written, or -1
+     * if the run failed; a failed run leaves the watermark where it was.
+     */
+    public synchronized int export() {
+        Connection conn = null;
+        try {
+            File tableDir = new File(exportDir, TABLE_DIR);
+            if (!tableDir.isDirectory() && !tableDir.mkdirs()) {
+                throw new IOException("Cannot create export directory " + tableDir.getPath());
+            }
+            ExportManifest manifest = ExportManifest.load(exportDir);
+            removeUncommittedSegments(tableDir, manifest.getLastRun());
+            SegmentWriter writer = new SegmentWriter(tableDir, manifest.getLastRun() + 1);
+
+            conn = DatabaseConnection.getConnection();
+            Timestamp upTo = transactionDAO.getDatabaseTime(conn, SAFETY_LAG_SECONDS);
+            transactionDAO.scanChangedTransactions(conn, manifest.getWatermark(), upTo, writer::add);
+            writer.flush();
+
+            manifest.commitRun(writer.run, upTo, writer.rows);
+            System.out.println("Exported " + writer.rows + " transaction(s) changed before " + upTo + ".");
+            return writer.rows;
+        } catch (SQLException | IOException | UncheckedIOException e) {
+            System.err.println("Error exporting transaction history: " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        } finally {
+            DatabaseConnection.closeConnection(conn);
+        }
+    }
+
+    // Segments left behind by a run that failed before updating the manifest
+    private static void removeUncommittedSegments(File tableDir, int lastRun) throws IOException {
+        File[] monthDirs = tableDir.listFiles(File::isDirectory);
+        if (monthDirs == null) {
+            return;
+        }
+        for (File monthDir : monthDirs) {
+            File[] files = monthDir.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (file.getName().endsWith(".tmp") || runOf(file) > lastRun) {
+                    Files.delete(file.toPath());
+                }
+            }
+        }
+    }
+
+    // Run number of a part-<run>-<part> segment file, or 0 for other files
+    static int runOf(File segmentFile) {
+        String name = segmentFile.getName();
+        if (!name.startsWith("part-") || !name.endsWith(ColumnarFormat.SEGMENT_SUFFIX) || name.length() < 11) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(name.substring(5, 11));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Buffers rows of one month at a time; rows arrive in borrow_date order
+    private static class SegmentWriter {
+        private final File tableDir;
+        private final int run;
+        private YearMonth month;
+        private TransactionSegment segment;
+        private int part;
+        private int rows;
+
+        SegmentWriter(File tableDir, int run) {
+            this.tableDir = tableDir;
+            this.run = run;
+        }
+
+        void add(Transaction transaction) {
+            try {
+                YearMonth rowMonth = YearMonth.from(transaction.getBorrowDate());
+                if (segment != null && (!rowMonth.equals(month) || segment.size() == SEGMENT_ROWS)) {
+                    flush();
+                }
+                if (segment == null) {
+                    month = rowMonth;
+                    segment = new TransactionSegment(1024);
+                }
+                segment.add(transaction);
+                rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void flush() throws IOException {
+            if (segment == null || segment.size() == 0) {
+                return;
+            }
+            File monthDir = new File(tableDir, month.toString());
+            if (!monthDir.isDirectory() && !monthDir.mkdirs()) {
+                throw new IOException("Cannot create export directory " + monthDir.getPath());
+            }
+            String name = String.format("part-%06d-%04d%s", run, part++, ColumnarFormat.SEGMENT_SUFFIX);
+            File tmp = new File(monthDir, name + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(tmp), 1 << 16)))) {
+                segment.write(out);
+            }
+            Files.move(tmp.toPath(), new File(monthDir, name).toPath(), StandardCopyOption.ATOMIC_MOVE);
+            segment = null;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.library.analytics;
+
+import com.library.model.Transaction;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A block of exported transactions held column by column. Dates are epoch days, fines
+ * are in cents, and status, category and membership type are codes into per-segment
+ * dictionaries. On disk, transaction ids and borrow dates are delta-encoded against the
+ * previous row (rows are written in borrow_date, transaction_id order), due and return
+ * dates are deltas from the borrow date, and everything is a varint.
+ */
+public class TransactionSegment {
+
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private int size;
+    private int[] transactionIds;
+    private int[] bookIds;
+    private int[] userIds;
+    private int[] borrowDays;
+    private int[] dueDays;
+    private int[] returnDays;
+    private long[] fineCents;
+    private byte[] statusCodes;
+    private int[] categoryCodes;
+    private byte[] membershipCodes;
+
+    private final List<String> statusDict = new ArrayList<>();
+    private final List<String> categoryDict = new ArrayList<>();
+    private final List<String> membershipDict = new ArrayList<>();
+    private final Map<String, Integer> dictCodes = new HashMap<>();
+
+    public TransactionSegment(int capacity) {
+        transactionIds = new int[capacity];
+        bookIds = new int[capacity];
+        userIds = new int[capacity];
+        borrowDays = new int[capacity];
+        dueDays = new int[capacity];
+        returnDays = new int[capacity];
+        fineCents = new long[capacity];
+        statusCodes = new byte[capacity];
+        categoryCodes = new int[capacity];
+        membershipCodes = new byte[capacity];
+    }
+
+    // Appends a transaction loaded with its book category and membership type
+    public void add(Transaction transaction) {
+        if (size == transactionIds.length) {
+            grow(Math.max(16, size * 2));
+        }
+        transactionIds[size] = transaction.getTransactionId();
+        bookIds[size] = transaction.getBookId();
+        userIds[size] = transaction.getUserId();
+        borrowDays[size] = (int) transaction.getBorrowDate().toEpochDay();
+        dueDays[size] = (int) transaction.getDueDate().toEpochDay();
+        returnDays[size] = transaction.getReturnDate() != null
+                ? (int) transaction.getReturnDate().toEpochDay()
+                : NO_DATE;
+        fineCents[size] = transaction.getFineAmount().movePointRight(2).longValueExact();
+        statusCodes[size] = (byte) code(statusDict, "s:", transaction.getStatus().name());
+        categoryCodes[size] = code(categoryDict, "c:",
+                transaction.getBookCategory() != null ? transaction.getBookCategory() : "(none)");
+        membershipCodes[size] = (byte) code(membershipDict, "m:", transaction.getMembershipType().name());
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTransactionId(int row) {
+        return transactionIds[row];
+    }
+
+    public int getBookId(int row) {
+        return bookIds[row];
+    }
+
+    public int getUserId(int row) {
+        return userIds[row];
+    }
+
+    public int getBorrowDay(int row) {
+        return borrowDays[row];
+    }
+
+    public int getDueDay(int row) {
+        return dueDays[row];
+    }
+
+    // NO_DATE while the book is still out
+    public int getReturnDay(int row) {
+        return returnDays[row];
+    }
+
+    public long getFineCents(int row) {
+        return fineCents[row];
+    }
+
+    public int getStatusCode(int row) {
+        return statusCodes[row];
+    }
+
+    public int getCategoryCode(int row) {
+        return categoryCodes[row];
+    }
+
+    public int getMembershipCode(int row) {
+        return membershipCodes[row];
+    }
+
+    public List<String> getStatusDictionary() {
+        return statusDict;
+    }
+
+    public List<String> getCategoryDictionary() {
+        return categoryDict;
+    }
+
+    public List<String> getMembershipDictionary() {
+        return membershipDict;
+    }
+
+    // ==================== Serialization ====================
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(ColumnarFormat.MAGIC);
+        out.writeInt(ColumnarFormat.VERSION);
+        ColumnarFormat.writeVarLong(out, size);
+        writeDictionary(out, statusDict);
+        writeDictionary(out, categoryDict);
+        writeDictionary(out, membershipDict);
+
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            ColumnarFormat.writeSigned(out, transactionIds[i] - previous);
+            previous = transactionIds[i];
+        }
+        for (int i = 0; i < size; i++) {
+            ColumnarFormat.writeVarLong(out, bookIds[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            ColumnarFormat.writeVarLong(out, userIds[i]);
+        }
+        previous = 0;
+        for (int i = 0; i < size; i++) {
+            ColumnarFormat.writeSigned(out, borrowDays[i] - previous);
+            previous = borrowDays[i];
+        }
+        for (int i = 0; i < size; i++) {
+            ColumnarFormat.writeSigned(out, (long) dueDays[i] - borrowDays[i]);
+        }
+        // 0 marks a missing return date, otherwise the zigzagged delta plus one
+        for (int i = 0; i < size; i++) {
+            if (returnDays[i] == NO_DATE) {
+                ColumnarFormat.writeVarLong(out, 0);
+            } else {
+                ColumnarFormat.writeVarLong(out, ColumnarFormat.zigzag((long) returnDays[i] - borrowDays[i]) + 1);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            ColumnarFormat.writeVarLong(out, fineCents[i]);
+        }
+        out.write(statusCodes, 0, size);
+        for (int i = 0; i < size; i++) {
+            ColumnarFormat.writeVarLong(out, categoryCodes[i]);
+        }
+        out.write(membershipCodes, 0, size);
+    }
+
+    public static TransactionSegment read(DataInputStream in) throws IOException {
+        if (in.readInt() != ColumnarFormat.MAGIC) {
+            throw new IOException("Not a transaction segment");
+        }
+        int version = in.readInt();
+        if (version != ColumnarFormat.VERSION) {
+            throw new IOException("Unsupported segment version " + version);
+        }
+
+        int size = (int) ColumnarFormat.readVarLong(in);
+        TransactionSegment segment = new TransactionSegment(size);
+        segment.size = size;
+        readDictionary(in, segment.statusDict);
+        readDictionary(in, segment.categoryDict);
+        readDictionary(in, segment.membershipDict);
+
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += ColumnarFormat.readSigned(in);
+            segment.transactionIds[i] = (int) previous;
+        }
+        for (int i = 0; i < size; i++) {
+            segment.bookIds[i] = (int) ColumnarFormat.readVarLong(in);
+        }
+        for (int i = 0; i < size; i++) {
+            segment.userIds[i] = (int) ColumnarFormat.readVarLong(in);
+        }
+        previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += ColumnarFormat.readSigned(in);
+            segment.borrowDays[i] = (int) previous;
+        }
+        for (int i = 0; i < size; i++) {
+            segment.dueDays[i] = (int) (segment.borrowDays[i] + ColumnarFormat.readSigned(in));
+        }
+        for (int i = 0; i < size; i++) {
+            long encoded = ColumnarFormat.readVarLong(in);
+            if (encoded == 0) {
+                segment.returnDays[i] = NO_DATE;
+            } else {
+                segment.returnDays[i] = (int) (segment.borrowDays[i] + ColumnarFormat.unzigzag(encoded - 1));
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            segment.fineCents[i] = ColumnarFormat.readVarLong(in);
+        }
+        in.readFully(segment.statusCodes, 0, size);
+        for (int i = 0; i < size; i++) {
+            segment.categoryCodes[i] = (int) ColumnarFormat.readVarLong(in);
+        }
+        in.readFully(segment.membershipCodes, 0, size);
+        return segment;
+    }
+
+    // ==================== Helpers ====================
+
+    private int code(List<String> dictionary, String prefix, String value) {
+        Integer code = dictCodes.get(prefix + value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            dictCodes.put(prefix + value, code);
+        }
+        return code;
+    }
+
+    private void grow(int capacity) {
+        transactionIds = Arrays.copyOf(transactionIds, capacity);
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        userIds = Arrays.copyOf(userIds, capacity);
+        borrowDays = Arrays.copyOf(borrowDays, capacity);
+        dueDays = Arrays.copyOf(dueDays, capacity);
+        returnDays = Arrays.copyOf(returnDays, capacity);
+        fineCents = Arrays.copyOf(fineCents, capacity);
+        statusCodes = Arrays.copyOf(statusCodes, capacity);
+        categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+        membershipCodes = Arrays.copyOf(membershipCodes, capacity);
+    }
+
+    private static void writeDictionary(DataOutputStream out, List<String> dictionary) throws IOException {
+        ColumnarFormat.writeVarLong(out, dictionary.size());
+        for (String value : dictionary) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static void readDictionary(DataInputStream in, List<String> dictionary) throws IOException {
+        int count = (int) ColumnarFormat.readVarLong(in);
+        for (int i = 0; i < count; i++) {
+            dictionary.add(in.readUTF());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.library.model;
+
+import java.time.LocalDateTime;
+
+public class Transfer {
+
+    public enum State {
+        STARTED, COMMITTING, COMPLETED, ABORTED
+    }
+
+    private int transferId;
+    private int sourceBranchId;
+    private int sourceBookId;
+    private int destBranchId;
+    private int userId;
+    private int destTransactionId;
+    private State state;
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public Transfer() {
+    }
+
+    public Transfer(int sourceBranchId, int sourceBookId, int destBranchId, int userId) {
+        this.sourceBranchId = sourceBranchId;
+        this.sourceBookId = sourceBookId;
+        this.destBranchId = destBranchId;
+        this.userId = userId;
+        this.state = State.STARTED;
+    }
+
+    // Getters and Setters
+    public int getTransferId() {
+        return transferId;
+    }
+
+    public void setTransferId(int transferId) {
+        this.transferId = transferId;
+    }
+
+    public int getSourceBranchId() {
+        return sourceBranchId;
+    }
+
+    public void setSourceBranchId(int sourceBranchId) {
+        this.sourceBranchId = sourceBranchId;
+    }
+
+    public int getSourceBookId() {
+        return sourceBookId;
+    }
+
+    public void setSourceBookId(int sourceBookId) {
+        this.sourceBookId = sourceBookId;
+    }
+
+    // The member's branch, under which the copy joins the home catalogue
+    public int getDestBranchId() {
+        return destBranchId;
+    }
+
+    public void setDestBranchId(int destBranchId) {
+        this.destBranchId = destBranchId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    // The loan created in the home database; 0 until both branches are prepared
+    public int getDestTransactionId() {
+        return destTransactionId;
+    }
+
+    public void setDestTransactionId(int destTransactionId) {
+        this.destTransactionId = destTransactionId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Transfer[ID=%d, Book=%d@%d -> User=%d@%d, State=%s]",
+                transferId, sourceBookId, sourceBranchId, userId, destBranchId, state);
+    }
+}
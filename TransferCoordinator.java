@@ -0,0 +1,306 @@
+package com.library.service;
+
+import com.library.dao.BookDAO;
+import com.library.dao.TransactionDAO;
+import com.library.dao.TransferLogDAO;
+import com.library.dao.UserDAO;
+import com.library.events.ChangeEventBus;
+import com.library.model.Book;
+import com.library.model.Transaction;
+import com.library.model.Transfer;
+import com.library.model.User;
+import com.library.util.DatabaseConnection;
+import com.library.util.ShardRouter;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lends a book held by a branch with its own database to a member of this library. The
+ * copy leaves the source branch's catalogue and joins the home database's catalogue
+ * (under the member's branch) already on loan, in one atomic step across both databases.
+ * The loan is then an ordinary home-database loan, so returns, fines and history find it.
+ *
+ * Both sides run as MySQL XA branches of one global transaction and are prepared
+ * before anything commits. The outcome is recorded in transfer_log (home database)
+ * before it is applied: STARTED while the branches are being prepared, COMMITTING once
+ * both are. After a crash, recover() rolls back STARTED transfers and finishes
+ * COMMITTING ones, so a copy is never lost or counted twice.
+ */
+public class TransferCoordinator {
+
+    // MySQL XAER_NOTA: the branch is unknown, i.e. never prepared or already resolved
+    private static final int XA_UNKNOWN_XID = 1397;
+
+    private static final String SOURCE = "source";
+    private static final String DESTINATION = "destination";
+
+    private final BookDAO bookDAO;
+    private final UserDAO userDAO;
+    private final TransactionDAO transactionDAO;
+    private final TransferLogDAO transferLogDAO;
+    private final PolicyEngine policyEngine;
+    private final CirculationStats circulationStats;
+    private final PopularTitlesTracker popularTitles;
+    private final ShardRouter shards = ShardRouter.get();
+    private final ChangeEventBus eventBus = ChangeEventBus.getInstance();
+
+    public TransferCoordinator(BookDAO bookDAO, UserDAO userDAO, TransactionDAO transactionDAO,
+            TransferLogDAO transferLogDAO, PolicyEngine policyEngine, CirculationStats circulationStats,
+            PopularTitlesTracker popularTitles) {
+        this.bookDAO = bookDAO;
+        this.userDAO = userDAO;
+        this.transactionDAO = transactionDAO;
+        this.transferLogDAO = transferLogDAO;
+        this.policyEngine = policyEngine;
+        this.circulationStats = circulationStats;
+        this.popularTitles = popularTitles;
+    }
+
+    /**
+     * Moves a copy of the book from the source branch into the home database and lends it
+     * to the user there, with the same checks as a normal borrow. Returns the new loan, or
+     * null if the transfer was refused or failed.
+     */
+    public Transaction transferAndBorrow(int userId, int sourceBranchId, int sourceBookId) {
+        if (!shards.hasOwnDatabase(sourceBranchId)) {
+            System.err.println("Branch " + sourceBranchId + " uses the main database; borrow the book directly instead.");
+            return null;
+        }
+        User member = userDAO.getUserById(userId);
+        if (member == null) {
+            System.err.println("User not found!");
+            return null;
+        }
+
+        Transfer transfer = new Transfer(sourceBranchId, sourceBookId, member.getBranchId(), userId);
+        if (!transferLogDAO.createTransfer(transfer)) {
+            return null;
+        }
+
+        try {
+            return transfer(transfer);
+        } finally {
+            // Drops events the destination staged if the transfer did not get to publish them
+            eventBus.discardStaged();
+        }
+    }
+
+    // Prepares both branches of a logged transfer, then commits or aborts them
+    private Transaction transfer(Transfer transfer) {
+        Book book;
+        Loan loan;
+        try {
+            book = prepareSource(transfer);
+            if (book == null) {
+                System.err.println("Book not found or not available at branch " + transfer.getSourceBranchId() + "!");
+                abort(transfer);
+                return null;
+            }
+            loan = prepareDestination(transfer, book);
+            if (loan == null) {
+                abort(transfer);
+                return null;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error preparing transfer " + transfer.getTransferId() + ": " + e.getMessage());
+            e.printStackTrace();
+            abort(transfer);
+            return null;
+        }
+
+        // The decision point: once COMMITTING is durable the transfer will complete
+        transfer.setDestTransactionId(loan.transaction.getTransactionId());
+        if (!transferLogDAO.updateState(transfer, Transfer.State.COMMITTING)) {
+            abort(transfer);
+            return null;
+        }
+
+        if (!resolve(transfer, true)) {
+            // Prepared branches keep their locks until recovery commits them
+            System.err.println("Transfer " + transfer.getTransferId()
+                    + " is committed but not yet applied everywhere; it will be completed on restart.");
+            return loan.transaction;
+        }
+        transferLogDAO.updateState(transfer, Transfer.State.COMPLETED);
+        eventBus.publishStaged();
+
+        circulationStats.recordBorrow(book, loan.membershipType);
+        popularTitles.recordBorrow(book);
+        System.out.println("Book transferred from branch " + transfer.getSourceBranchId() + " and borrowed! Due date: "
+                + loan.transaction.getDueDate());
+        return loan.transaction;
+    }
+
+    /**
+     * Finishes transfers left unfinished by a crash: those that never reached COMMITTING
+     * are rolled back on both branches, the others are committed. Run at startup, before
+     * new transfers begin.
+     */
+    public int recover() {
+        List<Transfer> unfinished = transferLogDAO.getUnfinishedTransfers();
+        int resolved = 0;
+        for (Transfer transfer : unfinished) {
+            boolean commit = transfer.getState() == Transfer.State.COMMITTING;
+            if (resolve(transfer, commit)) {
+                transferLogDAO.updateState(transfer, commit ? Transfer.State.COMPLETED : Transfer.State.ABORTED);
+                resolved++;
+            }
+        }
+        if (!unfinished.isEmpty()) {
+            System.out.println("Recovered " + resolved + " of " + unfinished.size() + " unfinished transfer(s).");
+        }
+        return resolved;
+    }
+
+    // Removes the copy from the source catalogue; null if there is no copy to give
+    private Book prepareSource(Transfer transfer) throws SQLException {
+        try (Connection conn = connect(transfer, SOURCE)) {
+            String xid = xid(transfer, SOURCE);
+            xa(conn, "XA START " + xid);
+            try {
+                Book book = bookDAO.removeTransferCopy(conn, transfer.getSourceBookId());
+                xa(conn, "XA END " + xid);
+                if (book == null) {
+                    xa(conn, "XA ROLLBACK " + xid);
+                    return null;
+                }
+                xa(conn, "XA PREPARE " + xid);
+                return book;
+            } catch (SQLException e) {
+                abandon(conn, xid);
+                throw e;
+            }
+        }
+    }
+
+    // Adds the copy to the home catalogue and records the loan there; null if the borrow is refused
+    private Loan prepareDestination(Transfer transfer, Book book) throws SQLException {
+        try (Connection conn = connect(transfer, DESTINATION)) {
+            String xid = xid(transfer, DESTINATION);
+            xa(conn, "XA START " + xid);
+            try {
+                Loan loan = borrowTransferredCopy(conn, transfer, book);
+                xa(conn, "XA END " + xid);
+                if (loan == null) {
+                    xa(conn, "XA ROLLBACK " + xid);
+                    return null;
+                }
+                xa(conn, "XA PREPARE " + xid);
+                return loan;
+            } catch (SQLException e) {
+                abandon(conn, xid);
+                throw e;
+            }
+        }
+    }
+
+    private Loan borrowTransferredCopy(Connection conn, Transfer transfer, Book book) throws SQLException {
+        User user = userDAO.lockUser(conn, transfer.getUserId());
+        if (user == null) {
+            System.err.println("User not found!");
+            return null;
+        }
+        if (user.getStatus() != User.Status.ACTIVE) {
+            System.err.println("User is not active!");
+            return null;
+        }
+
+        LoanPolicy policy = policyEngine.getPolicy();
+        int borrowLimit = policy.getMaxBooks(user.getMembershipType());
+        Set<Integer> borrowedBookIds = transactionDAO.getActiveBorrowedBookIds(conn, user.getUserId());
+        if (borrowedBookIds.size() >= borrowLimit) {
+            System.err.println("User has reached borrowing limit (" + borrowLimit + " books)!");
+            return null;
+        }
+
+        int bookId = bookDAO.addTransferredCopy(conn, book, transfer.getDestBranchId());
+        if (borrowedBookIds.contains(bookId)) {
+            System.err.println("User already has this book borrowed!");
+            return null;
+        }
+
+        LocalDate borrowDate = LocalDate.now();
+        LocalDate dueDate = borrowDate.plusDays(policy.getLoanDays(user.getMembershipType(), book.getCategory()));
+        Transaction loan = new Transaction(bookId, user.getUserId(), borrowDate, dueDate,
+                Transaction.TransactionStatus.BORROWED);
+        transactionDAO.createTransactions(conn, Collections.singletonList(loan));
+        return new Loan(loan, user.getMembershipType());
+    }
+
+    private void abort(Transfer transfer) {
+        if (resolve(transfer, false)) {
+            transferLogDAO.updateState(transfer, Transfer.State.ABORTED);
+        }
+    }
+
+    /**
+     * Commits or rolls back both prepared branches. A branch the database no longer knows
+     * about was never prepared or is already resolved, which counts as done.
+     */
+    private boolean resolve(Transfer transfer, boolean commit) {
+        boolean source = resolveBranch(transfer, SOURCE, commit);
+        boolean destination = resolveBranch(transfer, DESTINATION, commit);
+        return source && destination;
+    }
+
+    private boolean resolveBranch(Transfer transfer, String side, boolean commit) {
+        String statement = (commit ? "XA COMMIT " : "XA ROLLBACK ") + xid(transfer, side);
+        try (Connection conn = connect(transfer, side)) {
+            xa(conn, statement);
+            return true;
+        } catch (SQLException e) {
+            if (e.getErrorCode() == XA_UNKNOWN_XID) {
+                return true;
+            }
+            System.err.println("Error resolving transfer " + transfer.getTransferId() + " at the " + side
+                    + " database: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // The source is the branch's own database; the destination is the home database
+    private Connection connect(Transfer transfer, String side) throws SQLException {
+        return SOURCE.equals(side) ? shards.getConnection(transfer.getSourceBranchId())
+                : DatabaseConnection.getConnection();
+    }
+
+    // Ends and rolls back a branch that failed before it was prepared
+    private static void abandon(Connection conn, String xid) {
+        try {
+            xa(conn, "XA END " + xid);
+        } catch (SQLException ignored) {
+            // Already ended
+        }
+        try {
+            xa(conn, "XA ROLLBACK " + xid);
+        } catch (SQLException e) {
+            System.err.println("Error rolling back transfer branch " + xid + ": " + e.getMessage());
+        }
+    }
+
+    private static String xid(Transfer transfer, String side) {
+        return "'library-transfer-" + transfer.getTransferId() + "','" + side + "'";
+    }
+
+    private static void xa(Connection conn, String statement) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(statement);
+        }
+    }
+
+    private static final class Loan {
+        final Transaction transaction;
+        final User.MembershipType membershipType;
+
+        Loan(Transaction transaction, User.MembershipType membershipType) {
+            this.transaction = transaction;
+            this.membershipType = membershipType;
+        }
+    }
+}
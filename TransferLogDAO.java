@@ -0,0 +1,96 @@
+package com.library.dao;
+
+import com.library.model.Transfer;
+import com.library.util.DatabaseConnection;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The inter-branch transfer coordinator log. It lives in the home database and every
+ * write commits on its own, so a state change is durable before the coordinator acts
+ * on it.
+ */
+public class TransferLogDAO {
+
+    public boolean createTransfer(Transfer transfer) {
+        String sql = "INSERT INTO transfer_log (source_branch_id, source_book_id, dest_branch_id, user_id, state) " +
+                "VALUES (?, ?, ?, ?, ?)";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            pstmt.setInt(1, transfer.getSourceBranchId());
+            pstmt.setInt(2, transfer.getSourceBookId());
+            pstmt.setInt(3, transfer.getDestBranchId());
+            pstmt.setInt(4, transfer.getUserId());
+            pstmt.setString(5, transfer.getState().name());
+            pstmt.executeUpdate();
+
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    transfer.setTransferId(generatedKeys.getInt(1));
+                    return true;
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error logging transfer: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    public boolean updateState(Transfer transfer, Transfer.State state) {
+        String sql = "UPDATE transfer_log SET state = ?, dest_transaction_id = ? WHERE transfer_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, state.name());
+            if (transfer.getDestTransactionId() > 0) {
+                pstmt.setInt(2, transfer.getDestTransactionId());
+            } else {
+                pstmt.setNull(2, Types.INTEGER);
+            }
+            pstmt.setInt(3, transfer.getTransferId());
+
+            if (pstmt.executeUpdate() > 0) {
+                transfer.setState(state);
+                return true;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error updating transfer " + transfer.getTransferId() + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    // Transfers that were neither completed nor aborted, oldest first
+    public List<Transfer> getUnfinishedTransfers() {
+        List<Transfer> transfers = new ArrayList<>();
+        String sql = "SELECT * FROM transfer_log WHERE state IN ('STARTED', 'COMMITTING') ORDER BY transfer_id";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                Transfer transfer = new Transfer();
+                transfer.setTransferId(rs.getInt("transfer_id"));
+                transfer.setSourceBranchId(rs.getInt("source_branch_id"));
+                transfer.setSourceBookId(rs.getInt("source_book_id"));
+                transfer.setDestBranchId(rs.getInt("dest_branch_id"));
+                transfer.setUserId(rs.getInt("user_id"));
+                transfer.setDestTransactionId(rs.getInt("dest_transaction_id"));
+                transfer.setState(Transfer.State.valueOf(rs.getString("state")));
+                transfer.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+                transfers.add(transfer);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving unfinished transfers: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return transfers;
+    }
+}
@@ -2,6 +2,7 @@ package com.library.model;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Objects;
 
 public class User {
 
@@ -13,6 +14,11 @@ public class User {
         ACTIVE, SUSPENDED, INACTIVE
     }
 
+    // Columns an UPDATE can write; setters record which of them changed since load
+    public enum Field {
+        NAME, EMAIL, PHONE, ADDRESS, MEMBERSHIP_TYPE, MEMBERSHIP_DATE, STATUS
+    }
+
     private int userId;
     private String name;
     private String email;
@@ -24,6 +30,14 @@ public class User {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    // Bumped on every edit; updates only apply if it is unchanged since the row was read
+    private int version;
+
+    // Branch that owns the user; decides which database it is stored in (1 = main branch)
+    private int branchId = 1;
+
+    private int dirtyFields;
+
     // Constructors
     public User() {
     }
@@ -39,6 +53,23 @@ public class User {
         this.status = status;
     }
 
+    // Copies every field, e.g. to keep a before-image while the original is updated
+    public User(User other) {
+        this.userId = other.userId;
+        this.name = other.name;
+        this.email = other.email;
+        this.phone = other.phone;
+        this.address = other.address;
+        this.membershipType = other.membershipType;
+        this.membershipDate = other.membershipDate;
+        this.status = other.status;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.version = other.version;
+        this.branchId = other.branchId;
+        this.dirtyFields = other.dirtyFields;
+    }
+
     // Getters and Setters
     public int getUserId() {
         return userId;
@@ -53,6 +84,7 @@ public class User {
     }
 
     public void setName(String name) {
+        markDirty(Field.NAME, this.name, name);
         this.name = name;
     }
 
@@ -61,6 +93,7 @@ public class User {
     }
 
     public void setEmail(String email) {
+        markDirty(Field.EMAIL, this.email, email);
         this.email = email;
     }
 
@@ -69,6 +102,7 @@ public class User {
     }
 
     public void setPhone(String phone) {
+        markDirty(Field.PHONE, this.phone, phone);
         this.phone = phone;
     }
 
@@ -77,6 +111,7 @@ public class User {
     }
 
     public void setAddress(String address) {
+        markDirty(Field.ADDRESS, this.address, address);
         this.address = address;
     }
 
@@ -85,6 +120,7 @@ public class User {
     }
 
     public void setMembershipType(MembershipType membershipType) {
+        markDirty(Field.MEMBERSHIP_TYPE, this.membershipType, membershipType);
         this.membershipType = membershipType;
     }
 
@@ -93,6 +129,7 @@ public class User {
     }
 
     public void setMembershipDate(LocalDate membershipDate) {
+        markDirty(Field.MEMBERSHIP_DATE, this.membershipDate, membershipDate);
         this.membershipDate = membershipDate;
     }
 
@@ -101,6 +138,7 @@ public class User {
     }
 
     public void setStatus(Status status) {
+        markDirty(Field.STATUS, this.status, status);
         this.status = status;
     }
 
@@ -120,6 +158,44 @@ public class User {
         this.updatedAt = updatedAt;
     }
 
+    public int getBranchId() {
+        return branchId;
+    }
+
+    public void setBranchId(int branchId) {
+        this.branchId = branchId;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    // ==================== Dirty tracking ====================
+
+    // Bitmask of Field ordinals
+    public int getDirtyFields() {
+        return dirtyFields;
+    }
+
+    public boolean isDirty(Field field) {
+        return (dirtyFields & (1 << field.ordinal())) != 0;
+    }
+
+    // Called once the current values match the database row
+    public void clearDirty() {
+        dirtyFields = 0;
+    }
+
+    private void markDirty(Field field, Object oldValue, Object newValue) {
+        if (!Objects.equals(oldValue, newValue)) {
+            dirtyFields |= 1 << field.ordinal();
+        }
+    }
+
     @Override
     public String toString() {
         return String.format("User[ID=%d, Name='%s', Email='%s', Type=%s, Status=%s]",
@@ -1,17 +1,44 @@
 package com.library.dao;
 
+import com.library.events.ChangeEvent;
+import com.library.events.ChangeEventBus;
 import com.library.model.User;
+import com.library.util.ColumnIndex;
 import com.library.util.DatabaseConnection;
+import com.library.util.ResilientExecutor;
+import com.library.util.SqlUtils;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class UserDAO {
 
+    private final ChangeEventBus events = ChangeEventBus.getInstance();
+    private final ResilientExecutor resilience = ResilientExecutor.get();
+
+    // Column of each User.Field, by ordinal
+    private static final String[] UPDATE_COLUMNS = {
+            "name", "email", "phone", "address", "membership_type", "membership_date", "status" };
+
+    // UPDATE statement per combination of dirty fields, built on first use
+    private static final ConcurrentHashMap<Integer, String> UPDATE_SQL = new ConcurrentHashMap<>();
+
+    // Columns read by extractUserFromResultSet, named after their labels
+    private enum Column {
+        USER_ID, NAME, EMAIL, PHONE, ADDRESS, MEMBERSHIP_TYPE, MEMBERSHIP_DATE, STATUS, CREATED_AT, UPDATED_AT,
+        VERSION, BRANCH_ID
+    }
+
+    private static final ColumnIndex<Column> COLUMNS = new ColumnIndex<>(Column.class);
+
     public boolean addUser(User user) {
         String sql = "INSERT INTO users (name, email, phone, address, membership_type, " +
-                "membership_date, status) VALUES (?, ?, ?, ?, ?, ?, ?)";
+                "membership_date, status, branch_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
         try (Connection conn = DatabaseConnection.getConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -23,6 +50,7 @@ public class UserDAO {
             pstmt.setString(5, user.getMembershipType().name());
             pstmt.setDate(6, Date.valueOf(user.getMembershipDate()));
             pstmt.setString(7, user.getStatus().name());
+            pstmt.setInt(8, user.getBranchId());
 
             int affectedRows = pstmt.executeUpdate();
 
@@ -30,9 +58,11 @@ public class UserDAO {
                 try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         user.setUserId(generatedKeys.getInt(1));
+                        user.clearDirty();
                     }
                 }
                 System.out.println("User added successfully: " + user.getName());
+                events.publish(ChangeEvent.inserted(User.class, user.getUserId(), new User(user)));
                 return true;
             }
         } catch (SQLException e) {
@@ -42,23 +72,20 @@ public class UserDAO {
         return false;
     }
 
+    // Null if there is no such user; throws DataAccessException if the lookup itself fails
     public User getUserById(int userId) {
         String sql = "SELECT * FROM users WHERE user_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        return resilience.execute("load user " + userId, () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                    PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
+                pstmt.setInt(1, userId);
+                ResultSet rs = pstmt.executeQuery();
 
-            if (rs.next()) {
-                return extractUserFromResultSet(rs);
+                return rs.next() ? extractUserFromResultSet(rs) : null;
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving user: " + e.getMessage());
-            e.printStackTrace();
-        }
-        return null;
+        });
     }
 
     public User getUserByEmail(String email) {
@@ -84,7 +111,7 @@ public class UserDAO {
         List<User> users = new ArrayList<>();
         String sql = "SELECT * FROM users ORDER BY name";
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
                 Statement stmt = conn.createStatement();
                 ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -102,7 +129,7 @@ public class UserDAO {
         List<User> users = new ArrayList<>();
         String sql = "SELECT * FROM users WHERE name LIKE ? ORDER BY name";
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, "%" + name + "%");
@@ -122,7 +149,7 @@ public class UserDAO {
         List<User> users = new ArrayList<>();
         String sql = "SELECT * FROM users WHERE membership_type = ? ORDER BY name";
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, type.name());
@@ -142,7 +169,7 @@ public class UserDAO {
         List<User> users = new ArrayList<>();
         String sql = "SELECT * FROM users WHERE status = 'ACTIVE' ORDER BY name";
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
                 Statement stmt = conn.createStatement();
                 ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -156,51 +183,139 @@ public class UserDAO {
         return users;
     }
 
-    public boolean updateUser(User user) {
-        String sql = "UPDATE users SET name = ?, email = ?, phone = ?, address = ?, " +
-                "membership_type = ?, membership_date = ?, status = ? WHERE user_id = ?";
+    /**
+     * One page of active users, optionally of one membership type, ordered by
+     * (name, user_id). Pass the last user of the previous page as {@code after}
+     * (null for the first page).
+     */
+    public List<User> getActiveUsers(User.MembershipType type, User after, int limit) {
+        List<User> users = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM users WHERE status = 'ACTIVE'");
+        if (type != null) {
+            sql.append(" AND membership_type = ?");
+        }
+        if (after != null) {
+            sql.append(" AND (name > ? OR (name = ? AND user_id > ?))");
+        }
+        sql.append(" ORDER BY name, user_id LIMIT ?");
 
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
 
-            pstmt.setString(1, user.getName());
-            pstmt.setString(2, user.getEmail());
-            pstmt.setString(3, user.getPhone());
-            pstmt.setString(4, user.getAddress());
-            pstmt.setString(5, user.getMembershipType().name());
-            pstmt.setDate(6, Date.valueOf(user.getMembershipDate()));
-            pstmt.setString(7, user.getStatus().name());
-            pstmt.setInt(8, user.getUserId());
+            int index = 1;
+            if (type != null) {
+                pstmt.setString(index++, type.name());
+            }
+            if (after != null) {
+                pstmt.setString(index++, after.getName());
+                pstmt.setString(index++, after.getName());
+                pstmt.setInt(index++, after.getUserId());
+            }
+            pstmt.setInt(index, limit);
+            ResultSet rs = pstmt.executeQuery();
 
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                System.out.println("User updated successfully: " + user.getName());
-                return true;
+            while (rs.next()) {
+                users.add(extractUserFromResultSet(rs));
             }
         } catch (SQLException e) {
+            System.err.println("Error retrieving active users: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return users;
+    }
+
+    /**
+     * Saves a user read earlier, writing only the fields changed since it was read. The
+     * update only applies if nobody else has edited the user (or changed their status)
+     * since it was read; otherwise it returns false.
+     */
+    public boolean updateUser(User user) {
+        int dirtyFields = user.getDirtyFields();
+        if (dirtyFields == 0) {
+            System.out.println("No changes to save for: " + user.getName());
+            return true;
+        }
+        String sql = UPDATE_SQL.computeIfAbsent(dirtyFields, fields -> "UPDATE users SET " +
+                SqlUtils.assignments(UPDATE_COLUMNS, fields) + ", version = version + 1 " +
+                "WHERE user_id = ? AND version = ?");
+
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            // The locked row is the before-image, and tells a stale edit from a missing user
+            User before = lockUser(conn, user.getUserId());
+            if (before == null || before.getVersion() != user.getVersion()) {
+                conn.rollback();
+                if (before != null) {
+                    System.err.println("User " + user.getUserId() + " was changed by someone else; reload them and try again.");
+                }
+                return false;
+            }
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int index = 1;
+                for (User.Field field : User.Field.values()) {
+                    if (user.isDirty(field)) {
+                        setField(pstmt, index++, user, field);
+                    }
+                }
+                pstmt.setInt(index++, user.getUserId());
+                pstmt.setInt(index, user.getVersion());
+                pstmt.executeUpdate();
+            }
+            conn.commit();
+
+            user.setVersion(user.getVersion() + 1);
+            user.clearDirty();
+            System.out.println("User updated successfully: " + user.getName());
+            events.publish(ChangeEvent.updated(User.class, user.getUserId(), before, new User(user)));
+            return true;
+        } catch (SQLException e) {
+            rollback(conn);
             System.err.println("Error updating user: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            DatabaseConnection.closeConnection(conn);
         }
         return false;
     }
 
     public boolean updateUserStatus(int userId, User.Status status) {
-        String sql = "UPDATE users SET status = ? WHERE user_id = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, status.name());
-            pstmt.setInt(2, userId);
+        String sql = "UPDATE users SET status = ?, version = version + 1 WHERE user_id = ?";
+
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            // Locked so the before- and after-images match what was written
+            User before = lockUser(conn, userId);
+            if (before == null) {
+                conn.rollback();
+                return false;
+            }
 
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                System.out.println("User status updated successfully!");
-                return true;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, status.name());
+                pstmt.setInt(2, userId);
+                pstmt.executeUpdate();
             }
+            conn.commit();
+
+            System.out.println("User status updated successfully!");
+            User after = new User(before);
+            after.setStatus(status);
+            after.setVersion(before.getVersion() + 1);
+            events.publish(ChangeEvent.updated(User.class, userId, before, after));
+            return true;
         } catch (SQLException e) {
+            rollback(conn);
             System.err.println("Error updating user status: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            DatabaseConnection.closeConnection(conn);
         }
         return false;
     }
@@ -208,19 +323,33 @@ public class UserDAO {
     public boolean deleteUser(int userId) {
         String sql = "DELETE FROM users WHERE user_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
 
-            pstmt.setInt(1, userId);
-            int affectedRows = pstmt.executeUpdate();
+            // Locked so the before-image is the row actually deleted
+            User before = lockUser(conn, userId);
+            if (before == null) {
+                conn.rollback();
+                return false;
+            }
 
-            if (affectedRows > 0) {
-                System.out.println("User deleted successfully!");
-                return true;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, userId);
+                pstmt.executeUpdate();
             }
+            conn.commit();
+
+            System.out.println("User deleted successfully!");
+            events.publish(ChangeEvent.deleted(User.class, userId, before));
+            return true;
         } catch (SQLException e) {
+            rollback(conn);
             System.err.println("Error deleting user: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            DatabaseConnection.closeConnection(conn);
         }
         return false;
     }
@@ -245,31 +374,105 @@ public class UserDAO {
         return false;
     }
 
+    // Loads and row-locks one user; the lock is held until the caller commits
+    public User lockUser(Connection conn, int userId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM users WHERE user_id = ? FOR UPDATE")) {
+            pstmt.setInt(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? extractUserFromResultSet(rs) : null;
+            }
+        }
+    }
+
+    public Map<Integer, User.MembershipType> getMembershipTypes(Connection conn, Collection<Integer> userIds)
+            throws SQLException {
+        Map<Integer, User.MembershipType> types = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return types;
+        }
+        String sql = "SELECT user_id, membership_type FROM users WHERE user_id IN (" +
+                SqlUtils.placeholders(userIds.size()) + ")";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (int userId : userIds) {
+                pstmt.setInt(index++, userId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    types.put(rs.getInt("user_id"), User.MembershipType.valueOf(rs.getString("membership_type")));
+                }
+            }
+        }
+        return types;
+    }
+
+    private void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                System.err.println("Error rolling back transaction: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void setField(PreparedStatement pstmt, int index, User user, User.Field field)
+            throws SQLException {
+        switch (field) {
+            case NAME:
+                pstmt.setString(index, user.getName());
+                break;
+            case EMAIL:
+                pstmt.setString(index, user.getEmail());
+                break;
+            case PHONE:
+                pstmt.setString(index, user.getPhone());
+                break;
+            case ADDRESS:
+                pstmt.setString(index, user.getAddress());
+                break;
+            case MEMBERSHIP_TYPE:
+                pstmt.setString(index, user.getMembershipType().name());
+                break;
+            case MEMBERSHIP_DATE:
+                pstmt.setDate(index, Date.valueOf(user.getMembershipDate()));
+                break;
+            case STATUS:
+                pstmt.setString(index, user.getStatus().name());
+                break;
+        }
+    }
+
     private User extractUserFromResultSet(ResultSet rs) throws SQLException {
+        ColumnIndex.Positions<Column> column = COLUMNS.of(rs);
         User user = new User();
-        user.setUserId(rs.getInt("user_id"));
-        user.setName(rs.getString("name"));
-        user.setEmail(rs.getString("email"));
-        user.setPhone(rs.getString("phone"));
-        user.setAddress(rs.getString("address"));
-        user.setMembershipType(User.MembershipType.valueOf(rs.getString("membership_type")));
-
-        Date membershipDate = rs.getDate("membership_date");
+        user.setUserId(rs.getInt(column.of(Column.USER_ID)));
+        user.setName(rs.getString(column.of(Column.NAME)));
+        user.setEmail(rs.getString(column.of(Column.EMAIL)));
+        user.setPhone(rs.getString(column.of(Column.PHONE)));
+        user.setAddress(rs.getString(column.of(Column.ADDRESS)));
+        user.setMembershipType(User.MembershipType.valueOf(rs.getString(column.of(Column.MEMBERSHIP_TYPE))));
+
+        Date membershipDate = rs.getDate(column.of(Column.MEMBERSHIP_DATE));
         if (membershipDate != null) {
             user.setMembershipDate(membershipDate.toLocalDate());
         }
 
-        user.setStatus(User.Status.valueOf(rs.getString("status")));
+        user.setStatus(User.Status.valueOf(rs.getString(column.of(Column.STATUS))));
 
-        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp createdAt = rs.getTimestamp(column.of(Column.CREATED_AT));
         if (createdAt != null) {
             user.setCreatedAt(createdAt.toLocalDateTime());
         }
 
-        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        Timestamp updatedAt = rs.getTimestamp(column.of(Column.UPDATED_AT));
         if (updatedAt != null) {
             user.setUpdatedAt(updatedAt.toLocalDateTime());
         }
+        user.setVersion(rs.getInt(column.of(Column.VERSION)));
+        user.setBranchId(rs.getInt(column.of(Column.BRANCH_ID)));
+        user.clearDirty();
 
         return user;
     }
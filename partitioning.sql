@@ -0,0 +1,45 @@
+-- Range partitioning of the transactions table by borrow_date (MySQL 8.0)
+--
+-- Optional. Run once against an existing library_management database created from
+-- schema.sql. After this the application maintains the partitions itself every night:
+-- it creates monthly partitions 3 months ahead and drops partitions older than the
+-- archive retention period once archival has emptied them.
+--
+-- MySQL restrictions on partitioned tables:
+--   * Foreign keys are not supported, so the keys to books and users are dropped.
+--     Deleting a book or user no longer cascades to its transactions.
+--   * Every unique key must include the partitioning column, so the primary key
+--     becomes (transaction_id, borrow_date). transaction_id stays AUTO_INCREMENT.
+--
+-- Queries that bound borrow_date (recent activity, overdue and accrual scans) then
+-- only read the partitions they need.
+
+USE library_management;
+
+ALTER TABLE transactions
+    DROP FOREIGN KEY transactions_ibfk_1,
+    DROP FOREIGN KEY transactions_ibfk_2;
+
+ALTER TABLE transactions
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (transaction_id, borrow_date);
+
+-- One partition for all older history, then one per month. The application adds
+-- later months by splitting them off pmax.
+ALTER TABLE transactions
+PARTITION BY RANGE (TO_DAYS(borrow_date)) (
+    PARTITION p_old VALUES LESS THAN (TO_DAYS('2026-01-01')),
+    PARTITION p202601 VALUES LESS THAN (TO_DAYS('2026-02-01')),
+    PARTITION p202602 VALUES LESS THAN (TO_DAYS('2026-03-01')),
+    PARTITION p202603 VALUES LESS THAN (TO_DAYS('2026-04-01')),
+    PARTITION p202604 VALUES LESS THAN (TO_DAYS('2026-05-01')),
+    PARTITION p202605 VALUES LESS THAN (TO_DAYS('2026-06-01')),
+    PARTITION p202606 VALUES LESS THAN (TO_DAYS('2026-07-01')),
+    PARTITION p202607 VALUES LESS THAN (TO_DAYS('2026-08-01')),
+    PARTITION p202608 VALUES LESS THAN (TO_DAYS('2026-09-01')),
+    PARTITION p202609 VALUES LESS THAN (TO_DAYS('2026-10-01')),
+    PARTITION p202610 VALUES LESS THAN (TO_DAYS('2026-11-01')),
+    PARTITION p202611 VALUES LESS THAN (TO_DAYS('2026-12-01')),
+    PARTITION p202612 VALUES LESS THAN (TO_DAYS('2027-01-01')),
+    PARTITION pmax VALUES LESS THAN MAXVALUE
+);
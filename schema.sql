@@ -8,6 +8,16 @@ CREATE DATABASE IF NOT EXISTS library_management;
 USE library_management;
 
 -- Drop tables if they exist (for fresh installation)
+DROP TABLE IF EXISTS transfer_log;
+
+DROP TABLE IF EXISTS job_checkpoints;
+
+DROP TABLE IF EXISTS fine_ledger;
+
+DROP TABLE IF EXISTS holds;
+
+DROP TABLE IF EXISTS transactions_archive;
+
 DROP TABLE IF EXISTS transactions;
 
 DROP TABLE IF EXISTS users;
@@ -25,6 +35,8 @@ CREATE TABLE books (
     category VARCHAR(50),
     total_copies INT NOT NULL DEFAULT 1,
     available_copies INT NOT NULL DEFAULT 1,
+    version INT NOT NULL DEFAULT 0,
+    branch_id INT NOT NULL DEFAULT 1,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     CONSTRAINT chk_copies CHECK (
@@ -51,6 +63,8 @@ CREATE TABLE users (
         'SUSPENDED',
         'INACTIVE'
     ) NOT NULL DEFAULT 'ACTIVE',
+    version INT NOT NULL DEFAULT 0,
+    branch_id INT NOT NULL DEFAULT 1,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
@@ -75,18 +89,117 @@ CREATE TABLE transactions (
     FOREIGN KEY (user_id) REFERENCES users (user_id) ON DELETE CASCADE
 );
 
+-- Create Transactions Archive table (RETURNED transactions moved out of the hot table;
+-- no foreign keys so history survives deleted books and users)
+CREATE TABLE transactions_archive (
+    transaction_id INT PRIMARY KEY,
+    book_id INT NOT NULL,
+    user_id INT NOT NULL,
+    borrow_date DATE NOT NULL,
+    due_date DATE NOT NULL,
+    return_date DATE,
+    fine_amount DECIMAL(10, 2) DEFAULT 0.00,
+    status ENUM(
+        'BORROWED',
+        'RETURNED',
+        'OVERDUE'
+    ) NOT NULL DEFAULT 'RETURNED',
+    created_at TIMESTAMP NULL,
+    updated_at TIMESTAMP NULL,
+    archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Create Holds table (reservation queue for unavailable books)
+CREATE TABLE holds (
+    hold_id INT AUTO_INCREMENT PRIMARY KEY,
+    book_id INT NOT NULL,
+    user_id INT NOT NULL,
+    request_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    expiry_date DATE,
+    status ENUM(
+        'WAITING',
+        'READY',
+        'FULFILLED',
+        'EXPIRED',
+        'CANCELLED'
+    ) NOT NULL DEFAULT 'WAITING',
+    FOREIGN KEY (book_id) REFERENCES books (book_id) ON DELETE CASCADE,
+    FOREIGN KEY (user_id) REFERENCES users (user_id) ON DELETE CASCADE
+);
+
+-- Create Fine Ledger table (running fine total per user, maintained on every fine change)
+CREATE TABLE fine_ledger (
+    user_id INT PRIMARY KEY,
+    total_fines DECIMAL(12, 2) NOT NULL DEFAULT 0.00,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users (user_id) ON DELETE CASCADE
+);
+
+-- Create Job Checkpoints table (progress of resumable batch jobs)
+CREATE TABLE job_checkpoints (
+    job_name VARCHAR(50) PRIMARY KEY,
+    run_date DATE NOT NULL,
+    last_id INT NOT NULL DEFAULT 0,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+-- Coordinator log for inter-branch transfers (home database only). A row is written
+-- before either branch is touched and moves to COMMITTING once both branches are
+-- prepared, so recovery knows whether to commit or roll back what it finds.
+CREATE TABLE transfer_log (
+    transfer_id INT AUTO_INCREMENT PRIMARY KEY,
+    source_branch_id INT NOT NULL,
+    source_book_id INT NOT NULL,
+    dest_branch_id INT NOT NULL,
+    user_id INT NOT NULL,
+    dest_transaction_id INT,
+    state ENUM(
+        'STARTED',
+        'COMMITTING',
+        'COMPLETED',
+        'ABORTED'
+    ) NOT NULL DEFAULT 'STARTED',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
 -- Create indexes for better performance
 CREATE INDEX idx_book_isbn ON books (isbn);
 
 CREATE INDEX idx_book_title ON books (title);
 
+CREATE INDEX idx_book_category_title ON books (category, title);
+
 CREATE INDEX idx_user_email ON users (email);
 
-CREATE INDEX idx_transaction_status ON transactions (status);
+CREATE INDEX idx_user_status_name ON users (status, name);
+
+CREATE INDEX idx_user_status_type_name ON users (status, membership_type, name);
+
+CREATE INDEX idx_transaction_status ON transactions (status, transaction_id);
 
 CREATE INDEX idx_transaction_user ON transactions (user_id);
 
-CREATE INDEX idx_transaction_book ON transactions (book_id);
+CREATE INDEX idx_transaction_book_status ON transactions (book_id, status);
+
+CREATE INDEX idx_transaction_borrow_date ON transactions (borrow_date);
+
+CREATE INDEX idx_transaction_updated ON transactions (updated_at);
+
+CREATE INDEX idx_transaction_status_borrow ON transactions (status, borrow_date);
+
+CREATE INDEX idx_archive_user ON transactions_archive (user_id);
+
+CREATE INDEX idx_archive_book ON transactions_archive (book_id);
+
+CREATE INDEX idx_hold_book_status ON holds (book_id, status);
+
+CREATE INDEX idx_hold_user_status ON holds (user_id, status);
+
+CREATE INDEX idx_hold_status_expiry ON holds (status, expiry_date);
+
+CREATE INDEX idx_transfer_state ON transfer_log (state);
 
 -- Insert sample data
 INSERT INTO